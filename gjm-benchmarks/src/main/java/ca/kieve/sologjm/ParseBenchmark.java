@@ -0,0 +1,72 @@
+package ca.kieve.sologjm;
+
+import jakarta.xml.bind.JAXBException;
+import org.audiveris.proxymusic.ScorePartwise;
+import org.audiveris.proxymusic.util.Marshalling;
+import org.audiveris.proxymusic.util.Marshalling.UnmarshallingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a score into a {@link GjmBuilder}, with either reader, and building without reading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Setup
+    public void setup() throws JAXBException {
+        // Creating the context is a one time cost, keep it out of the first iteration.
+        Marshalling.getContext(ScorePartwise.class);
+    }
+
+    /**
+     * The proxymusic object tree the old reader converted from.
+     */
+    @Benchmark
+    public Object unmarshal(ScoreState state) throws UnmarshallingException {
+        return Marshalling.unmarshal(new ByteArrayInputStream(state.m_xml));
+    }
+
+    /**
+     * Streaming the document into a builder, the parse* calls included.
+     */
+    @Benchmark
+    public GjmBuilder stax(ScoreState state) throws XMLStreamException {
+        GjmBuilder builder = state.m_score.newBuilder(false);
+        new MxlStreamReader(builder).read(new ByteArrayInputStream(state.m_xml),
+                state.m_xml.length);
+        return builder;
+    }
+
+    /**
+     * Only the parse* calls, replayed from the recorded reader events.
+     */
+    @Benchmark
+    public GjmBuilder build(ScoreState state) {
+        return state.m_score.build(false);
+    }
+
+    /**
+     * Like {@link #build(ScoreState)} with every note staccato, the difference is the expansion.
+     */
+    @Benchmark
+    public GjmBuilder buildStaccato(ScoreState state) {
+        return state.m_staccatoScore.build(false);
+    }
+}
@@ -0,0 +1,44 @@
+package ca.kieve.sologjm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GjmBuilder#postProcess()}: the swing when enabled, then the repeat plan. The builder is
+ * rebuilt before every call since post processing changes it, so this measures single shots.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Thread)
+public class PostProcessBenchmark {
+    @Param({ "false", "true" })
+    public boolean m_swing;
+
+    private GjmBuilder m_builder;
+
+    @Setup(Level.Invocation)
+    public void setup(ScoreState state) {
+        m_builder = state.m_score.build(m_swing);
+    }
+
+    @Benchmark
+    public GjmBuilder postProcess() {
+        m_builder.postProcess();
+        return m_builder;
+    }
+}
@@ -0,0 +1,101 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.GjmBuilder.AttributesEvent;
+import ca.kieve.sologjm.GjmBuilder.BarlineEvent;
+import ca.kieve.sologjm.GjmBuilder.NoteEvent;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The calls a reader made on its {@link GjmBuilder}, so they can be replayed on new builders to
+ * measure building without any XML parsing.
+ */
+public class RecordedScore {
+    private static final Object MEASURE_END = new Object();
+
+    private static class _RecordingBuilder extends GjmBuilder {
+        private final List<Object> m_events = new ArrayList<>();
+
+        private _RecordingBuilder() {
+            super("", "", 120, 100, 100, false, 0, 0);
+        }
+
+        @Override
+        public void parseAttributes(AttributesEvent attributes) {
+            m_events.add(attributes.copy());
+        }
+
+        @Override
+        public void parseBarline(BarlineEvent barline) {
+            m_events.add(barline.copy());
+        }
+
+        @Override
+        public void parseNote(NoteEvent note) {
+            m_events.add(note.copy());
+        }
+
+        @Override
+        public void nextMeasure() {
+            m_events.add(MEASURE_END);
+        }
+    }
+
+    private final List<Object> m_events;
+
+    private RecordedScore(List<Object> events) {
+        m_events = events;
+    }
+
+    /**
+     * Read a MusicXML document and record what it feeds the builder.
+     */
+    public static RecordedScore record(byte[] xml) throws XMLStreamException {
+        _RecordingBuilder recorder = new _RecordingBuilder();
+        new MxlStreamReader(recorder).read(new ByteArrayInputStream(xml), xml.length);
+        return new RecordedScore(recorder.m_events);
+    }
+
+    /**
+     * @return a copy of this score with every note staccato, for the staccato expansion.
+     */
+    public RecordedScore withStaccato() {
+        List<Object> events = new ArrayList<>(m_events.size());
+        for (Object event : m_events) {
+            if (event instanceof NoteEvent) {
+                NoteEvent note = ((NoteEvent) event).copy();
+                note.m_isStaccato = true;
+                events.add(note);
+            } else {
+                events.add(event);
+            }
+        }
+        return new RecordedScore(events);
+    }
+
+    public GjmBuilder newBuilder(boolean swing) {
+        return new GjmBuilder("Benchmark", "Benchmark", 120, 100, 40, swing, 0, 0);
+    }
+
+    /**
+     * Replay everything on a new builder, which is not post processed.
+     */
+    public GjmBuilder build(boolean swing) {
+        GjmBuilder builder = newBuilder(swing);
+        for (Object event : m_events) {
+            if (event == MEASURE_END) {
+                builder.nextMeasure();
+            } else if (event instanceof NoteEvent) {
+                builder.parseNote((NoteEvent) event);
+            } else if (event instanceof BarlineEvent) {
+                builder.parseBarline((BarlineEvent) event);
+            } else {
+                builder.parseAttributes((AttributesEvent) event);
+            }
+        }
+        return builder;
+    }
+}
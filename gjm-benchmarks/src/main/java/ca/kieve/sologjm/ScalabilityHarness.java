@@ -0,0 +1,288 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.MxlParser.ScoreReader;
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converts generated scores of growing sizes end to end with {@link MxlParser#parse}, and checks
+ * that the time, allocation and peak heap per measure stay about the same as the score grows.
+ * Exits with 1 if any of them grew more than allowed, so it can be run by CI.
+ *
+ * The generated scores have a single part, so the conversion runs on the calling thread and its
+ * allocation can be read from the thread MXBean.
+ */
+public class ScalabilityHarness {
+    private static final String USAGE = """
+            Usage: ScalabilityHarness [options]
+
+            Options:
+              --sizes <n,n,...>    Measure counts to convert. Default: 10,100,1000,10000,100000
+              --check-from <n>     Smallest size the scaling is checked from, the ones below
+                                   are dominated by fixed costs. Default: 1000
+              --runs <n>           Conversions per size, the best one counts. Default: 3
+              --chords <0-1>       Chord density of the scores. Default: 0.25
+              --repeats <n>        Repeat times of the scores. Default: 2
+              --swing              Convert with swing beat.
+              --max-time-growth <x>    Allowed growth of time per measure. Default: 2.0
+              --max-alloc-growth <x>   Allowed growth of allocation per measure. Default: 1.25
+              --max-heap-growth <x>    Allowed growth of peak heap per measure. Default: 2.0
+            """;
+
+    private static class Options {
+        private int[] m_sizes = { 10, 100, 1_000, 10_000, 100_000 };
+        private int m_checkFrom = 1_000;
+        private int m_runs = 3;
+        private double m_chordDensity = 0.25;
+        private int m_repeatTimes = 2;
+        private boolean m_swing = false;
+        private double m_maxTimeGrowth = 2.0;
+        private double m_maxAllocGrowth = 1.25;
+        private double m_maxHeapGrowth = 2.0;
+    }
+
+    private static class Result {
+        private final int m_measures;
+        private final long m_fileSize;
+        private final long m_nanos;
+        private final long m_allocatedBytes;
+        private final long m_peakHeapBytes;
+
+        private Result(int measures, long fileSize, long nanos, long allocatedBytes,
+                long peakHeapBytes)
+        {
+            m_measures = measures;
+            m_fileSize = fileSize;
+            m_nanos = nanos;
+            m_allocatedBytes = allocatedBytes;
+            m_peakHeapBytes = peakHeapBytes;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private ScalabilityHarness() {
+        // Do not instantiate
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options == null) {
+            System.out.print(USAGE);
+            return;
+        }
+
+        // Only the summaries are wanted, not a line per part.
+        Diagnostics.setLevel(Diagnostics.Level.WARN);
+
+        Path dir = Files.createTempDirectory("gjm-scalability");
+        List<Result> results = new ArrayList<>();
+        try {
+            // Warm up on the smallest score, so the first size isn't measured interpreted.
+            Path warmup = generate(dir, options, options.m_sizes[0]);
+            for (int i = 0; i < 20; ++i) {
+                convert(warmup, options);
+            }
+            Files.delete(warmup);
+
+            System.out.println("measures      file KB     ms    ns/measure  alloc B/measure"
+                    + "  peak heap B/measure");
+            for (int size : options.m_sizes) {
+                Result result = measure(dir, options, size);
+                results.add(result);
+                System.out.printf(Locale.ROOT, "%8d %12d %6d %13d %16d %20d%n",
+                        result.m_measures,
+                        result.m_fileSize / 1024,
+                        result.m_nanos / 1_000_000,
+                        result.m_nanos / result.m_measures,
+                        result.m_allocatedBytes / result.m_measures,
+                        result.m_peakHeapBytes / result.m_measures);
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+
+        System.exit(check(results, options) ? 0 : 1);
+    }
+
+    private static Options parseArgs(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            switch (arg) {
+            case "-h", "--help" -> {
+                return null;
+            }
+            case "--sizes" -> options.m_sizes = Arrays.stream(value(args, ++i, arg).split(","))
+                    .map(String::strip)
+                    .mapToInt(Integer::parseInt)
+                    .sorted()
+                    .toArray();
+            case "--check-from" -> options.m_checkFrom = Integer.parseInt(value(args, ++i, arg));
+            case "--runs" -> options.m_runs = Integer.parseInt(value(args, ++i, arg));
+            case "--chords" -> options.m_chordDensity = Double.parseDouble(value(args, ++i, arg));
+            case "--repeats" -> options.m_repeatTimes = Integer.parseInt(value(args, ++i, arg));
+            case "--swing" -> options.m_swing = true;
+            case "--max-time-growth" ->
+                    options.m_maxTimeGrowth = Double.parseDouble(value(args, ++i, arg));
+            case "--max-alloc-growth" ->
+                    options.m_maxAllocGrowth = Double.parseDouble(value(args, ++i, arg));
+            case "--max-heap-growth" ->
+                    options.m_maxHeapGrowth = Double.parseDouble(value(args, ++i, arg));
+            default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.m_sizes.length == 0 || options.m_runs < 1) {
+            throw new IllegalArgumentException("Nothing to run.");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static Path generate(Path dir, Options options, int measures) throws IOException {
+        Path path = dir.resolve("score-" + measures + ".mxl");
+        new ScoreGenerator()
+                .measures(measures)
+                .chordDensity(options.m_chordDensity)
+                .repeatTimes(options.m_repeatTimes)
+                .writeMxl(path);
+        return path;
+    }
+
+    private static void convert(Path path, Options options) throws Exception {
+        // No conversion cache, every run after the first would only copy the cached output.
+        new MxlParser(ScoreReader.fromSystemProperty(), null).parse(path.toFile(),
+                Writer.nullWriter(), "Scalability", "Harness", 120, 100, 40, options.m_swing, 0, 0);
+    }
+
+    /**
+     * @return the best of the runs for each of time, allocation and peak heap.
+     */
+    private static Result measure(Path dir, Options options, int measures) throws Exception {
+        Path path = generate(dir, options, measures);
+        File file = path.toFile();
+        long bestNanos = Long.MAX_VALUE;
+        long bestAllocated = Long.MAX_VALUE;
+        long bestPeakHeap = Long.MAX_VALUE;
+        try {
+            for (int run = 0; run < options.m_runs; ++run) {
+                System.gc();
+                long baseHeap = resetPeakHeap();
+                long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+
+                convert(path, options);
+
+                long nanos = System.nanoTime() - start;
+                long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                long peakHeap = Math.max(0, peakHeap() - baseHeap);
+
+                bestNanos = Math.min(bestNanos, nanos);
+                bestAllocated = Math.min(bestAllocated, allocated);
+                bestPeakHeap = Math.min(bestPeakHeap, peakHeap);
+            }
+            return new Result(measures, file.length(), bestNanos, bestAllocated, bestPeakHeap);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * @return the heap used now, which the peak is measured from.
+     */
+    private static long resetPeakHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Compare the cost per measure of every checked size to the smallest checked one.
+     *
+     * @return true if everything scaled linearly, within the allowed growth.
+     */
+    private static boolean check(List<Result> results, Options options) {
+        Result base = null;
+        boolean linear = true;
+        for (Result result : results) {
+            if (result.m_measures < options.m_checkFrom) {
+                continue;
+            }
+            if (base == null) {
+                base = result;
+                continue;
+            }
+            linear &= checkGrowth("Time", base, result, base.m_nanos, result.m_nanos,
+                    options.m_maxTimeGrowth);
+            linear &= checkGrowth("Allocation", base, result, base.m_allocatedBytes,
+                    result.m_allocatedBytes, options.m_maxAllocGrowth);
+            linear &= checkGrowth("Peak heap", base, result, base.m_peakHeapBytes,
+                    result.m_peakHeapBytes, options.m_maxHeapGrowth);
+        }
+
+        if (base == null) {
+            System.out.println("No sizes of at least " + options.m_checkFrom
+                    + " measures, scaling not checked.");
+        } else if (linear) {
+            System.out.println("Scaling is linear.");
+        }
+        return linear;
+    }
+
+    private static boolean checkGrowth(String name, Result base, Result result, long baseValue,
+            long value, double maxGrowth)
+    {
+        double basePerMeasure = Math.max(1d, baseValue / (double) base.m_measures);
+        double growth = (value / (double) result.m_measures) / basePerMeasure;
+        if (growth <= maxGrowth) {
+            return true;
+        }
+        System.out.printf(Locale.ROOT,
+                "FAILED: %s per measure grew %.2fx from %d to %d measures, at most %.2fx allowed.%n",
+                name, growth, base.m_measures, result.m_measures, maxGrowth);
+        return false;
+    }
+}
@@ -0,0 +1,437 @@
+package ca.kieve.sologjm;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates partwise MusicXML scores with only what {@link GjmBuilder} accepts, so conversions of
+ * any size can be measured without real songs. The same settings and seed always give the same
+ * document.
+ *
+ * Every measure is 4/4. Staff 1 plays sixteenth runs, eighth pairs (which swing), quarters (some
+ * staccato) and dotted quarters, staff 2 plays half notes, some tied. Notes get extra chord tones
+ * with {@link #chordDensity(double)}, and some chords are arpeggiated.
+ *
+ * Run {@link #main(String[])} to write one as an .mxl file.
+ */
+public class ScoreGenerator {
+    private static final String USAGE = """
+            Usage: ScoreGenerator [options] <output.mxl | output.xml>
+
+            Options:
+              --measures <n>       Number of measures. Default: 100
+              --staves <1-2>       Default: 2
+              --chords <0-1>       Chance of a note being a chord. Default: 0.25
+              --repeats <n>        Extra plays of each repeated section, 0 for none. Default: 0
+              --seed <n>           Default: 1
+            """;
+
+    private static final char[] STEPS = { 'C', 'D', 'E', 'F', 'G', 'A', 'B' };
+
+    // 4/4 with a quarter note of 4 divisions
+    private static final int DIVISIONS = 4;
+    private static final int MEASURE_DURATION = 4 * DIVISIONS;
+
+    // Repeated sections are REPEAT_LENGTH measures out of every REPEAT_SPACING
+    private static final int REPEAT_SPACING = 16;
+    private static final int REPEAT_LENGTH = 4;
+
+    private static final String MXL_MIMETYPE = "application/vnd.recordare.musicxml";
+    private static final String MXL_SCORE_ENTRY = "score.xml";
+    private static final String MXL_CONTAINER = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <container>
+              <rootfiles>
+                <rootfile full-path="score.xml" media-type="application/vnd.recordare.musicxml+xml"/>
+              </rootfiles>
+            </container>
+            """;
+
+    // Note flags
+    private static final int STACCATO = 1;
+    private static final int DOTTED = 1 << 1;
+    private static final int TIE_START = 1 << 2;
+    private static final int TIE_STOP = 1 << 3;
+
+    private int m_measures = 100;
+    private int m_staves = 2;
+    private double m_chordDensity = 0.25;
+    private double m_arpeggioDensity = 0.2;
+    private int m_repeatTimes = 0;
+    private double m_staccatoDensity = 0.1;
+    private double m_dottedDensity = 0.1;
+    private double m_tieDensity = 0.1;
+    private double m_restDensity = 0.05;
+    private long m_seed = 1;
+    private String m_title = null;
+
+    public static void main(String[] args) throws IOException {
+        ScoreGenerator generator = new ScoreGenerator();
+        Path output = null;
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            switch (arg) {
+            case "--measures" -> generator.measures(Integer.parseInt(args[++i]));
+            case "--staves" -> generator.staves(Integer.parseInt(args[++i]));
+            case "--chords" -> generator.chordDensity(Double.parseDouble(args[++i]));
+            case "--repeats" -> generator.repeatTimes(Integer.parseInt(args[++i]));
+            case "--seed" -> generator.seed(Long.parseLong(args[++i]));
+            default -> {
+                if (arg.startsWith("-") || output != null) {
+                    System.err.print(USAGE);
+                    System.exit(2);
+                }
+                output = Path.of(arg);
+            }
+            }
+        }
+        if (output == null) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        if (output.toString().endsWith(".xml")) {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                generator.generateXml(writer);
+            }
+        } else {
+            generator.writeMxl(output);
+        }
+        System.out.println("Wrote " + output + ", " + Files.size(output) + " bytes.");
+    }
+
+    public ScoreGenerator measures(int measures) {
+        m_measures = measures;
+        return this;
+    }
+
+    public ScoreGenerator staves(int staves) {
+        if (staves < 1 || staves > 2) {
+            throw new IllegalArgumentException("Only 1 or 2 staves are supported: " + staves);
+        }
+        m_staves = staves;
+        return this;
+    }
+
+    /**
+     * @param chordDensity the chance of a note getting extra chord tones, 0 to 1.
+     */
+    public ScoreGenerator chordDensity(double chordDensity) {
+        m_chordDensity = chordDensity;
+        return this;
+    }
+
+    /**
+     * @param arpeggioDensity the chance of a chord being arpeggiated, 0 to 1.
+     */
+    public ScoreGenerator arpeggioDensity(double arpeggioDensity) {
+        m_arpeggioDensity = arpeggioDensity;
+        return this;
+    }
+
+    /**
+     * @param repeatTimes how many extra times each repeated section is played, 0 for no repeats.
+     */
+    public ScoreGenerator repeatTimes(int repeatTimes) {
+        m_repeatTimes = repeatTimes;
+        return this;
+    }
+
+    public ScoreGenerator staccatoDensity(double staccatoDensity) {
+        m_staccatoDensity = staccatoDensity;
+        return this;
+    }
+
+    public ScoreGenerator dottedDensity(double dottedDensity) {
+        m_dottedDensity = dottedDensity;
+        return this;
+    }
+
+    public ScoreGenerator tieDensity(double tieDensity) {
+        m_tieDensity = tieDensity;
+        return this;
+    }
+
+    public ScoreGenerator restDensity(double restDensity) {
+        m_restDensity = restDensity;
+        return this;
+    }
+
+    public ScoreGenerator seed(long seed) {
+        m_seed = seed;
+        return this;
+    }
+
+    /**
+     * @param title the work title, empty for none. Defaults to one with the measure count.
+     */
+    public ScoreGenerator title(String title) {
+        m_title = title;
+        return this;
+    }
+
+    public byte[] generateXmlBytes() {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(m_measures * 2048);
+        try {
+            writeXml(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen, in memory.
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Write the score as an .mxl file, the compressed MusicXML container {@link MxlParser} reads.
+     */
+    public void writeMxl(Path path) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(path))) {
+            // The mimetype goes first and uncompressed, so it can be sniffed.
+            byte[] mimetype = MXL_MIMETYPE.getBytes(StandardCharsets.US_ASCII);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("META-INF/container.xml"));
+            zip.write(MXL_CONTAINER.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry(MXL_SCORE_ENTRY));
+            writeXml(zip);
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Write the MusicXML document, UTF-8 encoded. {@code out} is not closed.
+     */
+    public void writeXml(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        generateXml(writer);
+        writer.flush();
+    }
+
+    /**
+     * Write the MusicXML document a measure at a time, so scores of any size can be generated.
+     */
+    public void generateXml(Appendable out) throws IOException {
+        SplittableRandom random = new SplittableRandom(m_seed);
+        StringBuilder sb = new StringBuilder(4096);
+
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<score-partwise version=\"3.1\">\n")
+                .append("  <work><work-title>")
+                .append(m_title == null ? "Synthetic " + m_measures : escapeXml(m_title))
+                .append("</work-title></work>\n")
+                .append("  <identification><creator type=\"composer\">ScoreGenerator</creator>"
+                        + "</identification>\n")
+                .append("  <part-list><score-part id=\"P1\"><part-name>Piano</part-name>"
+                        + "</score-part></part-list>\n")
+                .append("  <part id=\"P1\">\n");
+
+        for (int i = 0; i < m_measures; ++i) {
+            appendMeasure(sb, random, i);
+            out.append(sb);
+            sb.setLength(0);
+        }
+
+        sb.append("  </part>\n")
+                .append("</score-partwise>\n");
+        out.append(sb);
+    }
+
+    private void appendMeasure(StringBuilder sb, SplittableRandom random, int measure) {
+        sb.append("    <measure number=\"").append(measure + 1).append("\">\n");
+
+        if (measure == 0) {
+            sb.append("      <attributes>\n")
+                    .append("        <divisions>").append(DIVISIONS).append("</divisions>\n")
+                    .append("        <key><fifths>0</fifths></key>\n")
+                    .append("        <time><beats>4</beats><beat-type>4</beat-type></time>\n");
+            if (m_staves > 1) {
+                sb.append("        <staves>").append(m_staves).append("</staves>\n")
+                        .append("        <clef number=\"1\"><sign>G</sign><line>2</line></clef>\n")
+                        .append("        <clef number=\"2\"><sign>F</sign><line>4</line></clef>\n");
+            } else {
+                sb.append("        <clef><sign>G</sign><line>2</line></clef>\n");
+            }
+            sb.append("      </attributes>\n");
+            sb.append("      <direction placement=\"above\"><direction-type><metronome>"
+                    + "<beat-unit>quarter</beat-unit><per-minute>120</per-minute>"
+                    + "</metronome></direction-type><sound tempo=\"120\"/></direction>\n");
+        }
+
+        int repeatPosition = measure % REPEAT_SPACING;
+        boolean repeatStart = m_repeatTimes > 0 && repeatPosition == REPEAT_SPACING - REPEAT_LENGTH
+                && measure + REPEAT_LENGTH <= m_measures;
+        boolean repeatEnd = m_repeatTimes > 0 && repeatPosition == REPEAT_SPACING - 1;
+        if (repeatStart) {
+            sb.append("      <barline location=\"left\"><repeat direction=\"forward\"/>"
+                    + "</barline>\n");
+        }
+
+        // Staff 1, one beat at a time
+        int beat = 0;
+        while (beat < 4) {
+            if (beat < 3 && random.nextDouble() < m_dottedDensity) {
+                appendNote(sb, random, 1, "quarter", DIVISIONS * 3 / 2, 4, -1, DOTTED);
+                appendNote(sb, random, 1, "eighth", DIVISIONS / 2, 4, -1, 0);
+                beat += 2;
+                continue;
+            }
+            switch (random.nextInt(6)) {
+            case 0 -> {
+                for (int i = 0; i < 4; ++i) {
+                    appendNote(sb, random, 1, "16th", DIVISIONS / 4, 5, -1, 0);
+                }
+            }
+            case 1, 2, 3 -> {
+                appendNote(sb, random, 1, "eighth", DIVISIONS / 2, 4, -1, 0);
+                appendNote(sb, random, 1, "eighth", DIVISIONS / 2, 4, -1, 0);
+            }
+            default -> {
+                int flags = random.nextDouble() < m_staccatoDensity ? STACCATO : 0;
+                appendNote(sb, random, 1, "quarter", DIVISIONS, 4, -1, flags);
+            }
+            }
+            beat++;
+        }
+
+        if (m_staves > 1) {
+            sb.append("      <backup><duration>").append(MEASURE_DURATION)
+                    .append("</duration></backup>\n");
+
+            if (random.nextDouble() < m_tieDensity) {
+                int step = appendNote(sb, random, 2, "half", DIVISIONS * 2, 2, -1, TIE_START);
+                appendNote(sb, random, 2, "half", DIVISIONS * 2, 2, step, TIE_STOP);
+            } else {
+                appendNote(sb, random, 2, "half", DIVISIONS * 2, 2, -1, 0);
+                appendNote(sb, random, 2, "half", DIVISIONS * 2, 2, -1, 0);
+            }
+        }
+
+        if (repeatEnd) {
+            sb.append("      <barline location=\"right\"><repeat direction=\"backward\" times=\"")
+                    .append(m_repeatTimes).append("\"/></barline>\n");
+        }
+
+        sb.append("    </measure>\n");
+    }
+
+    /**
+     * @param step the step to play, or -1 for a random one.
+     * @return the step played, for a tie to continue. -1 for a rest.
+     */
+    private int appendNote(StringBuilder sb, SplittableRandom random, int staff, String type,
+            int duration, int baseOctave, int step, int flags)
+    {
+        boolean tied = (flags & (TIE_START | TIE_STOP)) != 0;
+        if (!tied && random.nextDouble() < m_restDensity) {
+            sb.append("      <note><rest/><duration>").append(duration)
+                    .append("</duration><voice>").append(staff).append("</voice><type>")
+                    .append(type).append("</type>");
+            if ((flags & DOTTED) != 0) {
+                sb.append("<dot/>");
+            }
+            sb.append("<staff>").append(staff).append("</staff></note>\n");
+            return -1;
+        }
+
+        if (step < 0) {
+            step = random.nextInt(STEPS.length);
+        }
+
+        // Tied notes stay single, the chord tones would need ties of their own.
+        if (tied || random.nextDouble() >= m_chordDensity) {
+            appendPitchedNote(sb, random, staff, type, duration, baseOctave, step, false, flags,
+                    false);
+            return step;
+        }
+
+        boolean arpeggiate = random.nextDouble() < m_arpeggioDensity;
+        appendPitchedNote(sb, random, staff, type, duration, baseOctave, step, false, flags,
+                arpeggiate);
+        // A third, and sometimes a fifth, above
+        int chordTones = 1 + random.nextInt(2);
+        for (int i = 1; i <= chordTones; ++i) {
+            appendPitchedNote(sb, random, staff, type, duration, baseOctave, step + 2 * i, true,
+                    flags & DOTTED, arpeggiate);
+        }
+        return step;
+    }
+
+    private void appendPitchedNote(StringBuilder sb, SplittableRandom random, int staff,
+            String type, int duration, int baseOctave, int step, boolean chord, int flags,
+            boolean arpeggiate)
+    {
+        int octave = baseOctave + step / STEPS.length;
+        // Keep tied notes natural, so both ends have the same pitch.
+        boolean sharp = (flags & (TIE_START | TIE_STOP)) == 0 && random.nextInt(10) == 0;
+
+        sb.append("      <note>");
+        if (chord) {
+            sb.append("<chord/>");
+        }
+        sb.append("<pitch><step>").append(STEPS[step % STEPS.length]).append("</step>");
+        if (sharp) {
+            sb.append("<alter>1</alter>");
+        }
+        sb.append("<octave>").append(octave).append("</octave></pitch>")
+                .append("<duration>").append(duration).append("</duration>");
+        if ((flags & TIE_STOP) != 0) {
+            sb.append("<tie type=\"stop\"/>");
+        }
+        if ((flags & TIE_START) != 0) {
+            sb.append("<tie type=\"start\"/>");
+        }
+        sb.append("<voice>").append(staff).append("</voice>")
+                .append("<type>").append(type).append("</type>");
+        if ((flags & DOTTED) != 0) {
+            sb.append("<dot/>");
+        }
+        if (sharp) {
+            sb.append("<accidental>sharp</accidental>");
+        }
+        sb.append("<staff>").append(staff).append("</staff>");
+
+        boolean staccato = (flags & STACCATO) != 0;
+        if (staccato || arpeggiate || (flags & (TIE_START | TIE_STOP)) != 0) {
+            sb.append("<notations>");
+            if ((flags & TIE_STOP) != 0) {
+                sb.append("<tied type=\"stop\"/>");
+            }
+            if ((flags & TIE_START) != 0) {
+                sb.append("<tied type=\"start\"/>");
+            }
+            if (arpeggiate) {
+                sb.append("<arpeggiate/>");
+            }
+            if (staccato) {
+                sb.append("<articulations><staccato/></articulations>");
+            }
+            sb.append("</notations>");
+        }
+        sb.append("</note>\n");
+    }
+
+    private static String escapeXml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
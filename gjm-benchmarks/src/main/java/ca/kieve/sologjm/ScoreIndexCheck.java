@@ -0,0 +1,106 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * Checks that {@link ScoreIndex} reads back the headers it saved, with titles that need escaping,
+ * and that an entry is only used while its file's size and modified time are the same. Exits with
+ * 1 if anything doesn't match, so it can be run by CI.
+ */
+public class ScoreIndexCheck {
+    // All need escaping in the index but the last, which is read as no title.
+    private static final String[] TITLES = {
+            "Tab\tseparated",
+            "Back\\slash, and \\t that isn't a tab",
+            "Line\nbreak",
+            "Trailing backslash\\",
+            "",
+    };
+
+    private ScoreIndexCheck() {
+        // Do not instantiate
+    }
+
+    public static void main(String[] args) throws Exception {
+        Diagnostics.setLevel(Diagnostics.Level.WARN);
+
+        Path dir = Files.createTempDirectory("gjm-index-check");
+        Path indexFile = dir.resolve("index.tsv");
+        Path[] scores = new Path[TITLES.length];
+        int failures = 0;
+        try {
+            ScoreIndex index = new ScoreIndex(indexFile);
+            for (int i = 0; i < TITLES.length; ++i) {
+                scores[i] = dir.resolve("score-" + i + ".mxl");
+                new ScoreGenerator().measures(4).title(TITLES[i]).writeMxl(scores[i]);
+                failures += expect("Scanned", index.get(scores[i]), TITLES[i]);
+            }
+            index.save();
+
+            // Same size and modified time but unreadable, so they can only come from the index.
+            for (Path score : scores) {
+                FileTime lastModified = Files.getLastModifiedTime(score);
+                Files.write(score, new byte[(int) Files.size(score)]);
+                Files.setLastModifiedTime(score, lastModified);
+            }
+            ScoreIndex saved = new ScoreIndex(indexFile);
+            if (saved.size() != TITLES.length) {
+                System.out.printf("FAILED: Read %d entries back, expected %d.%n", saved.size(),
+                        TITLES.length);
+                failures++;
+            }
+            for (int i = 0; i < TITLES.length; ++i) {
+                failures += expect("Indexed", saved.get(scores[i]), TITLES[i]);
+            }
+
+            // Another size is scanned again, even with the same modified time.
+            FileTime lastModified = Files.getLastModifiedTime(scores[0]);
+            new ScoreGenerator().measures(4).title("Changed").writeMxl(scores[0]);
+            Files.setLastModifiedTime(scores[0], lastModified);
+            failures += expect("Resized", saved.get(scores[0]), "Changed");
+
+            // Another modified time is scanned again, even with the same size.
+            Files.setLastModifiedTime(scores[1],
+                    FileTime.fromMillis(lastModified.toMillis() + 2_000));
+            try {
+                saved.get(scores[1]);
+                System.out.println("FAILED: Touched file wasn't scanned again.");
+                failures++;
+            } catch (IOException e) {
+                // Scanned, and it's unreadable.
+            }
+        } finally {
+            for (Path score : scores) {
+                if (score != null) {
+                    Files.deleteIfExists(score);
+                }
+            }
+            Files.deleteIfExists(indexFile);
+            Files.deleteIfExists(dir);
+        }
+
+        if (failures == 0) {
+            System.out.println("Score index checks passed.");
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * @return the number of failures, 0 or 1.
+     */
+    private static int expect(String what, ScoreHeader header, String title) {
+        String expected = title.isEmpty() ? null : title;
+        if (Objects.equals(header.getTitle(), expected)) {
+            return 0;
+        }
+        System.out.printf("FAILED: %s title is [%s], expected [%s].%n", what, header.getTitle(),
+                expected);
+        return 1;
+    }
+}
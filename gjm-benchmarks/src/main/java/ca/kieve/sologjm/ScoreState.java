@@ -0,0 +1,39 @@
+package ca.kieve.sologjm;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * A generated score, shared by every benchmark of a trial.
+ */
+@State(Scope.Benchmark)
+public class ScoreState {
+    @Param({ "100", "1000", "10000" })
+    public int m_measures;
+
+    @Param({ "0", "0.5" })
+    public double m_chordDensity;
+
+    @Param({ "0", "4" })
+    public int m_repeatTimes;
+
+    public byte[] m_xml;
+    public RecordedScore m_score;
+    public RecordedScore m_staccatoScore;
+
+    @Setup(Level.Trial)
+    public void setup() throws XMLStreamException {
+        m_xml = new ScoreGenerator()
+                .measures(m_measures)
+                .chordDensity(m_chordDensity)
+                .repeatTimes(m_repeatTimes)
+                .generateXmlBytes();
+        m_score = RecordedScore.record(m_xml);
+        m_staccatoScore = m_score.withStaccato();
+    }
+}
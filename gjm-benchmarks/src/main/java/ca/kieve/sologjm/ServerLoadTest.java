@@ -0,0 +1,164 @@
+package ca.kieve.sologjm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * POSTs a score to a running {@link ConversionServer} from many clients at once, and reports the
+ * throughput, latencies and response statuses. A 503 is the server pushing back, not a failure.
+ */
+public class ServerLoadTest {
+    private static final String USAGE = """
+            Usage: ServerLoadTest [options]
+
+            Start the server first, e.g. sologjm --serve 8080 --no-cache
+
+            Options:
+              --url <url>          Default: http://localhost:8080/convert
+              --file <mxl>         Score to send. Default: a generated one.
+              --measures <n>       Size of the generated score. Default: 1000
+              --requests <n>       Requests in total. Default: 200
+              --clients <n>        Requests in flight at once. Default: 16
+              --query <query>      Sent with every request, e.g. bpm=90&swing=true
+            """;
+
+    private static class Options {
+        private String m_url = "http://localhost:8080" + ConversionServer.CONVERT_PATH;
+        private Path m_file = null;
+        private int m_measures = 1000;
+        private int m_requests = 200;
+        private int m_clients = 16;
+        private String m_query = null;
+    }
+
+    private ServerLoadTest() {
+        // Do not instantiate
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options == null) {
+            System.out.print(USAGE);
+            return;
+        }
+
+        byte[] body;
+        if (options.m_file != null) {
+            body = Files.readAllBytes(options.m_file);
+        } else {
+            Path generated = Files.createTempFile("gjm-load", ".mxl");
+            try {
+                new ScoreGenerator().measures(options.m_measures).writeMxl(generated);
+                body = Files.readAllBytes(generated);
+            } finally {
+                Files.deleteIfExists(generated);
+            }
+        }
+
+        URI uri = URI.create(options.m_query == null
+                ? options.m_url
+                : options.m_url + "?" + options.m_query);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.m_clients);
+        List<Future<?>> futures = new ArrayList<>(options.m_requests);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        Map<String, AtomicInteger> statuses = Collections.synchronizedMap(new TreeMap<>());
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < options.m_requests; ++i) {
+            futures.add(executor.submit(() -> {
+                long requestStart = System.nanoTime();
+                String status;
+                try {
+                    HttpResponse<Void> response =
+                            client.send(request, HttpResponse.BodyHandlers.discarding());
+                    status = String.valueOf(response.statusCode());
+                } catch (Exception e) {
+                    status = e.getClass().getSimpleName();
+                }
+                latencies.add(System.nanoTime() - requestStart);
+                statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000d;
+        executor.shutdown();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf(Locale.ROOT, "%d requests of %d KB from %d clients in %.2f s"
+                        + " (%.1f requests/s)%n",
+                options.m_requests, body.length / 1024, options.m_clients, seconds,
+                options.m_requests / seconds);
+        System.out.printf(Locale.ROOT, "Latency ms: p50 %.1f, p95 %.1f, p99 %.1f, max %.1f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                percentile(sorted, 1.0));
+        System.out.println("Responses: " + statuses);
+    }
+
+    private static Options parseArgs(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            switch (arg) {
+            case "-h", "--help" -> {
+                return null;
+            }
+            case "--url" -> options.m_url = value(args, ++i, arg);
+            case "--file" -> options.m_file = Path.of(value(args, ++i, arg));
+            case "--measures" -> options.m_measures = Integer.parseInt(value(args, ++i, arg));
+            case "--requests" -> options.m_requests = Integer.parseInt(value(args, ++i, arg));
+            case "--clients" -> options.m_clients = Integer.parseInt(value(args, ++i, arg));
+            case "--query" -> options.m_query = value(args, ++i, arg);
+            default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.m_requests < 1 || options.m_clients < 1) {
+            throw new IllegalArgumentException("Nothing to run.");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static double percentile(List<Long> sortedNanos, double fraction) {
+        int index = (int) Math.ceil(fraction * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1_000_000d;
+    }
+}
@@ -0,0 +1,49 @@
+package ca.kieve.sologjm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a post processed builder, to a discarding writer or into a string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+    @Param({ "false", "true" })
+    public boolean m_swing;
+
+    private GjmBuilder m_builder;
+
+    @Setup
+    public void setup(ScoreState state) {
+        m_builder = state.m_score.build(m_swing);
+        m_builder.postProcess();
+    }
+
+    @Benchmark
+    public void writeGjm() throws IOException {
+        m_builder.writeGjm(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String writeGjmString() {
+        return m_builder.writeGjm();
+    }
+}
@@ -0,0 +1,1039 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.MxlParser.ScoreReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch conversion.
+ *
+ * Converts every MXL file matched on the command line on a pool of worker threads, largest files
+ * first so the long ones don't end up running alone at the end. Song information comes from a
+ * {@code <song>.properties} sidecar next to the file, then from the score itself, then from the
+ * command line fallbacks.
+ *
+ * With {@code --list} it shows what's in each file instead of converting it, from a
+ * {@link ScoreIndex} so unchanged files aren't opened again. With {@code --check} it shows what
+ * in each file can't be converted, see {@link ScoreValidator}. With {@code --lenient} it converts
+ * them anyway, and writes what it changed next to each output, see {@link ConversionIssue}.
+ *
+ * With {@code --watch} it keeps running instead, converting files as they're added to or changed
+ * in the given directories, without paying the JVM and JAXB startup for each. With
+ * {@code --serve} it converts over HTTP, see {@link ConversionServer}.
+ */
+public class BatchConverter {
+    private static final String USAGE = """
+            Usage: sologjm [options] <file | directory | glob>...
+                   sologjm --list [options] <file | directory | glob>...
+                   sologjm --check [options] <file | directory | glob>...
+                   sologjm --watch [options] <directory>...
+                   sologjm --serve <port> [options]
+
+            Converts .mxl files to .gjm. Directories are searched recursively.
+
+            Options:
+              -o, --output <dir>   Write .gjm files here instead of next to each input.
+              -j, --jobs <n>       Number of files to convert at once. Default: CPU count.
+              --author <name>      Author when neither the sidecar nor the score has one.
+              --bpm <n>            BPM when neither the sidecar nor the score has one. Default: 120
+              --volume1 <0-100>    Staff 1 volume when the sidecar has none. Default: 100
+              --volume2 <0-100>    Staff 2 volume when the sidecar has none. Default: 40
+              --swing              Use swing beat when the sidecar doesn't say.
+              --cache <dir>        Keep conversions here and reuse them for unchanged files.
+                                   Default: ~/.sologjm/cache, for packaged builds.
+              --no-cache           Always convert.
+              --variant <name>:<key>=<value>,...
+                                   Also write <song>-<name>.gjm with these sidecar keys
+                                   changed, e.g. slow:bpm=80,swing=true. Repeat for more
+                                   variants. The score is only read once for all of them.
+              --list               Show the title, composer, parts, measures, key, time and
+                                   tempo of each file instead of converting it. Remembered
+                                   in ~/.sologjm/index.tsv, unchanged files aren't opened
+                                   again.
+              --check              Show everything in each file that can't be converted,
+                                   and where, instead of converting it.
+              --skip-unsupported   Check each file before converting it, and skip it if
+                                   anything in it can't be converted.
+              --lenient            Leave out or approximate what can't be converted instead
+                                   of failing, and list it in <song>.issues.tsv next to
+                                   each output.
+              --watch              Keep running, converting .mxl files as they're added or
+                                   changed under the given directories.
+              --settle <ms>        With --watch, how long a file must stay unchanged before
+                                   it's converted. Default: 1000
+              --serve <port>       Keep running, converting .mxl files POSTed to
+                                   http://localhost:<port>/convert. -j limits how many
+                                   convert at once.
+              -h, --help           Show this message.
+
+            Sidecar (<song>.properties next to <song>.mxl), every key optional:
+              title, author, bpm, volume1, volume2, swing, octave1, octave2
+            """;
+
+    private static final String MXL_EXTENSION = ".mxl";
+    private static final String GJM_EXTENSION = ".gjm";
+    private static final String SIDECAR_EXTENSION = ".properties";
+    private static final String ISSUES_EXTENSION = ".issues.tsv";
+
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_FAILURES = 1;
+    private static final int EXIT_USAGE = 2;
+
+    // How long conversions still running get to finish when the server is stopped.
+    private static final int SERVE_STOP_SECONDS = 5;
+
+    private static class Options {
+        private final List<String> m_inputs = new ArrayList<>();
+        private Path m_outputDir = null;
+        private int m_jobs = Runtime.getRuntime().availableProcessors();
+        private String m_author = null;
+        private int m_bpm = 120;
+        private int m_volume1 = 100;
+        private int m_volume2 = 40;
+        private boolean m_swing = false;
+        private String m_cacheDir = null;
+        private boolean m_noCache = false;
+        private final List<Variant> m_variants = new ArrayList<>();
+        private boolean m_list = false;
+        private boolean m_check = false;
+        private boolean m_skipUnsupported = false;
+        private boolean m_lenient = false;
+        private boolean m_watch = false;
+        private int m_settleMillis = 1000;
+        private int m_servePort = -1;
+    }
+
+    private static class Variant {
+        private final String m_name;
+        private final Properties m_overrides;
+
+        private Variant(String name, Properties overrides) {
+            m_name = name;
+            m_overrides = overrides;
+        }
+
+        private ConversionParameters apply(ConversionParameters base) {
+            return new ConversionParameters(
+                    m_overrides.getProperty("title", base.getSongTitle()),
+                    m_overrides.getProperty("author", base.getSongAuthor()),
+                    intProperty(m_overrides, "bpm", base.getBpm()),
+                    intProperty(m_overrides, "volume1", base.getTrackVolume1()),
+                    intProperty(m_overrides, "volume2", base.getTrackVolume2()),
+                    booleanProperty(m_overrides, "swing", base.isSwingBeat()),
+                    intProperty(m_overrides, "octave1", base.getOctaveOffset1()),
+                    intProperty(m_overrides, "octave2", base.getOctaveOffset2()));
+        }
+    }
+
+    private static class Job {
+        private final Path m_input;
+        private final Path m_output;
+        private final long m_size;
+
+        private Job(Path input, Path output, long size) {
+            m_input = input;
+            m_output = output;
+            m_size = size;
+        }
+    }
+
+    private static class Result {
+        private final Job m_job;
+        private final long m_millis;
+        private final Exception m_error;
+        // Why it was skipped, null if it wasn't
+        private final ScoreValidator.Report m_unsupported;
+        // Of a lenient conversion
+        private final int m_issueCount;
+
+        private Result(Job job, long millis, Exception error) {
+            this(job, millis, error, null, 0);
+        }
+
+        private Result(Job job, long millis, Exception error,
+                ScoreValidator.Report unsupported, int issueCount)
+        {
+            m_job = job;
+            m_millis = millis;
+            m_error = error;
+            m_unsupported = unsupported;
+            m_issueCount = issueCount;
+        }
+    }
+
+    private static class WatchedFile {
+        // Of the input and sidecar last converted, null until one succeeds.
+        private byte[] m_hash = null;
+    }
+
+    private BatchConverter() {
+        // Do not instantiate
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return the process exit code. 0 if everything converted, 1 if any file failed, 2 for bad
+     *         arguments.
+     */
+    public static int run(String[] args) {
+        Options options;
+        List<Job> jobs;
+        try {
+            options = parseArgs(args);
+            if (options == null) {
+                System.out.print(USAGE);
+                return EXIT_OK;
+            }
+            if (options.m_servePort >= 0) {
+                return serve(options);
+            }
+            if (options.m_list) {
+                return list(options, collectInputs(options));
+            }
+            if (options.m_check) {
+                return check(options, collectInputs(options));
+            }
+            if (options.m_watch) {
+                return watch(options, watchRoots(options));
+            }
+            jobs = collectJobs(options);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (jobs.isEmpty()) {
+            System.err.println("No .mxl files found.");
+            return EXIT_USAGE;
+        }
+
+        return convertAll(options, jobs);
+    }
+
+    /**
+     * @return null if help was asked for.
+     */
+    private static Options parseArgs(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            switch (arg) {
+            case "-h", "--help" -> {
+                return null;
+            }
+            case "-o", "--output" -> options.m_outputDir = Path.of(value(args, ++i, arg));
+            case "-j", "--jobs" -> options.m_jobs = intValue(args, ++i, arg, 1, 1024);
+            case "--author" -> options.m_author = value(args, ++i, arg);
+            case "--bpm" -> options.m_bpm = intValue(args, ++i, arg, 1, 1000);
+            case "--volume1" -> options.m_volume1 = intValue(args, ++i, arg, 0, 100);
+            case "--volume2" -> options.m_volume2 = intValue(args, ++i, arg, 0, 100);
+            case "--swing" -> options.m_swing = true;
+            case "--cache" -> options.m_cacheDir = value(args, ++i, arg);
+            case "--no-cache" -> options.m_noCache = true;
+            case "--variant" -> options.m_variants.add(parseVariant(value(args, ++i, arg)));
+            case "--list" -> options.m_list = true;
+            case "--check" -> options.m_check = true;
+            case "--skip-unsupported" -> options.m_skipUnsupported = true;
+            case "--lenient" -> options.m_lenient = true;
+            case "--watch" -> options.m_watch = true;
+            case "--settle" -> options.m_settleMillis = intValue(args, ++i, arg, 0, 3_600_000);
+            case "--serve" -> options.m_servePort = intValue(args, ++i, arg, 0, 65535);
+            default -> {
+                if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+                options.m_inputs.add(arg);
+            }
+            }
+        }
+        if ((options.m_list ? 1 : 0) + (options.m_check ? 1 : 0) + (options.m_watch ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("Only one of --list, --check and --watch.");
+        }
+        if (options.m_lenient && (options.m_list || options.m_check || options.m_skipUnsupported)) {
+            throw new IllegalArgumentException(
+                    "--lenient doesn't go with --list, --check or --skip-unsupported.");
+        }
+        if (options.m_servePort >= 0) {
+            if (!options.m_inputs.isEmpty() || options.m_watch || options.m_list
+                    || options.m_check)
+            {
+                throw new IllegalArgumentException("--serve takes no inputs.");
+            }
+        } else if (options.m_inputs.isEmpty()) {
+            throw new IllegalArgumentException("No inputs given.");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static Variant parseVariant(String spec) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? "" : spec.substring(0, colon).strip();
+        if (name.isEmpty() || name.contains("/") || name.contains("\\")) {
+            throw new IllegalArgumentException("--variant needs a file name suffix: " + spec);
+        }
+
+        Properties overrides = new Properties();
+        for (String entry : spec.substring(colon + 1).split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("--variant expects key=value: " + entry);
+            }
+            String key = entry.substring(0, equals).strip();
+            String value = entry.substring(equals + 1).strip();
+            switch (key) {
+            case "title", "author", "swing" -> overrides.setProperty(key, value);
+            case "bpm", "volume1", "volume2", "octave1", "octave2" -> {
+                intSetting("--variant " + key, key, value);
+                overrides.setProperty(key, value);
+            }
+            default -> throw new IllegalArgumentException("Unknown --variant key: " + key);
+            }
+        }
+        return new Variant(name, overrides);
+    }
+
+    private static int intValue(String[] args, int index, String option, int min, int max) {
+        return parseInt(option, value(args, index, option), min, max);
+    }
+
+    /**
+     * @return the value of a sidecar or --variant number, in the same range as its option.
+     */
+    private static int intSetting(String what, String key, String value) {
+        return switch (key) {
+        case "bpm" -> parseInt(what, value, 1, 1000);
+        case "volume1", "volume2" -> parseInt(what, value, 0, 100);
+        // No options for these, the same range as ConversionServer's
+        case "octave1", "octave2" -> parseInt(what, value, -8, 8);
+        default -> throw new IllegalArgumentException(what + " is not a number setting");
+        };
+    }
+
+    private static int parseInt(String what, String value, int min, int max) {
+        int result;
+        try {
+            result = Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(what + " expects a number: " + value);
+        }
+        if (result < min || result > max) {
+            throw new IllegalArgumentException(
+                    what + " must be between " + min + " and " + max + ": " + value);
+        }
+        return result;
+    }
+
+    /*
+     * Input discovery
+     */
+
+    private static List<Job> collectJobs(Options options) throws IOException {
+        List<Path> inputs = collectInputs(options);
+        List<Job> jobs = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            jobs.add(jobFor(options, input));
+        }
+
+        // Largest first. Small files fill in the gaps at the end.
+        jobs.sort(Comparator.comparingLong((Job job) -> job.m_size).reversed());
+        return jobs;
+    }
+
+    private static List<Path> collectInputs(Options options) throws IOException {
+        Set<Path> inputs = new LinkedHashSet<>();
+        for (String input : options.m_inputs) {
+            collectInputs(input, inputs);
+        }
+        return new ArrayList<>(inputs);
+    }
+
+    private static Job jobFor(Options options, Path input) throws IOException {
+        Path outputDir = options.m_outputDir != null
+                ? options.m_outputDir
+                : input.toAbsolutePath().getParent();
+        Path output = outputDir.resolve(baseName(input) + GJM_EXTENSION);
+        return new Job(input, output, Files.size(input));
+    }
+
+    private static void collectInputs(String input, Set<Path> result) throws IOException {
+        int globStart = indexOfGlob(input);
+        if (globStart >= 0) {
+            collectGlob(input, globStart, result);
+            return;
+        }
+
+        Path path = Path.of(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.walk(path)) {
+                stream.filter(BatchConverter::isMxl)
+                        .sorted()
+                        .forEach(p -> result.add(p.toAbsolutePath().normalize()));
+            }
+        } else if (Files.isRegularFile(path)) {
+            result.add(path.toAbsolutePath().normalize());
+        } else {
+            throw new IllegalArgumentException("No such file or directory: " + input);
+        }
+    }
+
+    /**
+     * Walk from the last directory before the first wildcard, matching the rest of the pattern
+     * against paths relative to it.
+     */
+    private static void collectGlob(String input, int globStart, Set<Path> result)
+            throws IOException
+    {
+        String unixInput = input.replace('\\', '/');
+        int baseEnd = unixInput.lastIndexOf('/', globStart);
+        Path base = baseEnd < 0 ? Path.of(".") : Path.of(input.substring(0, baseEnd + 1));
+        String pattern = unixInput.substring(baseEnd + 1);
+        if (!Files.isDirectory(base)) {
+            throw new IllegalArgumentException("No such directory: " + base);
+        }
+
+        int maxDepth = pattern.contains("**")
+                ? Integer.MAX_VALUE
+                : (int) pattern.chars().filter(c -> c == '/').count() + 1;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> stream = Files.walk(base, maxDepth)) {
+            stream.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(base.relativize(p)))
+                    .sorted()
+                    .forEach(p -> result.add(p.toAbsolutePath().normalize()));
+        }
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); ++i) {
+            switch (input.charAt(i)) {
+            case '*', '?', '[', '{' -> {
+                return i;
+            }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isMxl(Path path) {
+        return Files.isRegularFile(path)
+                && path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(MXL_EXTENSION);
+    }
+
+    private static String baseName(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /*
+     * Conversion
+     */
+
+    private static int convertAll(Options options, List<Job> jobs) {
+        int threads = Math.min(options.m_jobs, jobs.size());
+        System.out.printf("Converting %d files on %d threads.\n", jobs.size(), threads);
+
+        MxlParser parser;
+        try {
+            parser = createParser(options);
+        } catch (IOException e) {
+            System.err.println("Can't use the cache directory: " + e);
+            return EXIT_USAGE;
+        }
+
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+        for (Job job : jobs) {
+            completionService.submit(() -> convert(parser, options, job));
+        }
+        executor.shutdown();
+
+        List<Result> failures = new ArrayList<>();
+        long bytes = 0;
+        int converted = 0;
+        int skipped = 0;
+        int withIssues = 0;
+        for (int i = 0; i < jobs.size(); ++i) {
+            Result result;
+            try {
+                result = completionService.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                System.err.println("Interrupted.");
+                return EXIT_FAILURES;
+            } catch (ExecutionException e) {
+                // convert() catches everything it can, this would be an Error.
+                throw new IllegalStateException(e.getCause());
+            }
+
+            if (result.m_unsupported != null) {
+                skipped++;
+                System.out.printf("[%d/%d] SKIPPED %s: %s\n", i + 1, jobs.size(),
+                        result.m_job.m_input, String.join("; ", result.m_unsupported.summarize()));
+            } else if (result.m_error == null) {
+                converted++;
+                bytes += result.m_job.m_size;
+                if (result.m_issueCount > 0) {
+                    withIssues++;
+                }
+                System.out.printf("[%d/%d] %s (%d ms%s)\n", i + 1, jobs.size(),
+                        result.m_job.m_output, result.m_millis, issuesNote(result));
+            } else {
+                failures.add(result);
+                System.out.printf("[%d/%d] FAILED %s: %s\n", i + 1, jobs.size(),
+                        result.m_job.m_input, result.m_error);
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000d;
+
+        System.out.println();
+        System.out.printf("Converted %d of %d files in %.2f s (%.2f files/s, %.2f MB/s)\n",
+                converted, jobs.size(), seconds,
+                converted / seconds,
+                bytes / (1024d * 1024d) / seconds);
+        if (skipped > 0) {
+            System.out.printf("Skipped %d that can't be converted.\n", skipped);
+        }
+        if (withIssues > 0) {
+            System.out.printf("%d converted with issues, see their %s files.\n", withIssues,
+                    ISSUES_EXTENSION);
+        }
+        if (failures.isEmpty()) {
+            return EXIT_OK;
+        }
+
+        System.out.printf("%d failed:\n", failures.size());
+        for (Result failure : failures) {
+            System.out.printf("  %s: %s\n", failure.m_job.m_input, failure.m_error);
+        }
+        return EXIT_FAILURES;
+    }
+
+    private static MxlParser createParser(Options options) throws IOException {
+        ScoreReader scoreReader = ScoreReader.fromSystemProperty();
+        MxlParser parser;
+        if (options.m_noCache) {
+            parser = new MxlParser(scoreReader, null);
+        } else if (options.m_cacheDir != null) {
+            parser = new MxlParser(scoreReader,
+                    ConversionCache.inDirectory(Path.of(options.m_cacheDir)));
+        } else {
+            parser = new MxlParser(scoreReader, ConversionCache.fromSystemProperty());
+        }
+        parser.setLenient(options.m_lenient);
+        return parser;
+    }
+
+    /**
+     * @return ", n issues" for a lenient conversion that had any, otherwise nothing.
+     */
+    private static String issuesNote(Result result) {
+        if (result.m_issueCount == 0) {
+            return "";
+        }
+        return ", " + result.m_issueCount + (result.m_issueCount == 1 ? " issue" : " issues");
+    }
+
+    private static Result convert(MxlParser parser, Options options, Job job) {
+        long startNanos = System.nanoTime();
+        try {
+            if (options.m_skipUnsupported) {
+                ScoreValidator.Report report = ScoreValidator.validate(job.m_input.toFile());
+                if (!report.isSupported()) {
+                    return new Result(job, elapsedMillis(startNanos), null, report, 0);
+                }
+            }
+
+            Properties sidecar = readSidecar(job.m_input);
+
+            // Only open the score for its header if the sidecar leaves something out.
+            ScoreHeader header = null;
+            if (!sidecar.containsKey("title")
+                    || !sidecar.containsKey("author")
+                    || !sidecar.containsKey("bpm"))
+            {
+                header = MxlParser.readHeader(job.m_input.toFile());
+            }
+
+            String title = sidecar.getProperty("title");
+            if (title == null && header != null) {
+                title = header.getTitle();
+            }
+            if (title == null) {
+                title = baseName(job.m_input);
+            }
+
+            String author = sidecar.getProperty("author");
+            if (author == null && header != null) {
+                author = header.getComposer();
+            }
+            if (author == null) {
+                author = options.m_author != null ? options.m_author : "Unknown";
+            }
+
+            int bpm = options.m_bpm;
+            if (header != null && header.getTempo() != ScoreHeader.NO_TEMPO) {
+                bpm = header.getTempo();
+            }
+            bpm = intProperty(sidecar, "bpm", bpm);
+
+            ConversionParameters parameters = new ConversionParameters(title, author, bpm,
+                    intProperty(sidecar, "volume1", options.m_volume1),
+                    intProperty(sidecar, "volume2", options.m_volume2),
+                    booleanProperty(sidecar, "swing", options.m_swing),
+                    intProperty(sidecar, "octave1", 0),
+                    intProperty(sidecar, "octave2", 0));
+
+            Files.createDirectories(job.m_output.getParent());
+            List<ConversionIssue> issues;
+            if (options.m_variants.isEmpty()) {
+                try (Writer writer = Files.newBufferedWriter(job.m_output,
+                        StandardCharsets.UTF_8))
+                {
+                    GjmBuilder gjmBuilder = parser.parseWithBuilder(job.m_input.toFile(), writer,
+                            parameters.getSongTitle(), parameters.getSongAuthor(),
+                            parameters.getBpm(), parameters.getTrackVolume1(),
+                            parameters.getTrackVolume2(), parameters.isSwingBeat(),
+                            parameters.getOctaveOffset1(), parameters.getOctaveOffset2(),
+                            ConversionMonitor.NONE);
+                    // From the cache, which only has conversions without issues.
+                    issues = gjmBuilder == null ? List.of() : gjmBuilder.getIssues();
+                } catch (Exception e) {
+                    Files.deleteIfExists(job.m_output);
+                    throw e;
+                }
+            } else {
+                issues = convertVariants(parser, options, job, parameters);
+            }
+
+            if (options.m_lenient) {
+                // Even without issues, so an old report never outlives its output.
+                Path report = job.m_output.resolveSibling(
+                        baseName(job.m_output) + ISSUES_EXTENSION);
+                try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                    ConversionIssue.writeTsv(issues, writer);
+                }
+            }
+            return new Result(job, elapsedMillis(startNanos), null, null, issues.size());
+        } catch (Exception e) {
+            return new Result(job, elapsedMillis(startNanos), e);
+        }
+    }
+
+    /**
+     * Write the song as is and every variant of it, from a single read.
+     *
+     * @return the issues of a lenient conversion.
+     */
+    private static List<ConversionIssue> convertVariants(MxlParser parser, Options options,
+            Job job, ConversionParameters parameters)
+            throws Exception
+    {
+        Map<ConversionParameters, Path> outputs = new LinkedHashMap<>();
+        outputs.put(parameters, job.m_output);
+        for (Variant variant : options.m_variants) {
+            Path output = job.m_output.resolveSibling(
+                    baseName(job.m_output) + "-" + variant.m_name + GJM_EXTENSION);
+            Path previous = outputs.putIfAbsent(variant.apply(parameters), output);
+            if (previous != null) {
+                throw new IllegalArgumentException("Variant " + variant.m_name
+                        + " has the same settings as " + previous.getFileName());
+            }
+        }
+
+        Map<ConversionParameters, Writer> writers = new LinkedHashMap<>();
+        List<ConversionIssue> issues = List.of();
+        Exception failure = null;
+        try {
+            for (Map.Entry<ConversionParameters, Path> output : outputs.entrySet()) {
+                writers.put(output.getKey(),
+                        Files.newBufferedWriter(output.getValue(), StandardCharsets.UTF_8));
+            }
+            issues = parser.parseVariants(job.m_input.toFile(), writers, ConversionMonitor.NONE);
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        for (Writer writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            // Don't leave some variants behind without the others
+            for (Path output : outputs.values()) {
+                Files.deleteIfExists(output);
+            }
+            throw failure;
+        }
+        return issues;
+    }
+
+    /*
+     * Listing
+     */
+
+    /**
+     * Print the header of every input, in order. They're scanned on the worker threads, unless
+     * the score index has them already.
+     */
+    private static int list(Options options, List<Path> inputs) {
+        if (inputs.isEmpty()) {
+            System.err.println("No .mxl files found.");
+            return EXIT_USAGE;
+        }
+
+        ScoreIndex index = ScoreIndex.fromSystemProperty();
+        int threads = Math.min(options.m_jobs, inputs.size());
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ScoreHeader>> headers = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            headers.add(executor.submit(() -> index != null
+                    ? index.get(input)
+                    : MxlParser.scanHeader(input.toFile())));
+        }
+        executor.shutdown();
+
+        int failed = 0;
+        for (int i = 0; i < inputs.size(); ++i) {
+            Path input = inputs.get(i);
+            ScoreHeader header;
+            try {
+                header = headers.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                System.err.println("Interrupted.");
+                return EXIT_FAILURES;
+            } catch (ExecutionException e) {
+                failed++;
+                System.out.printf("FAILED %s: %s\n", input, e.getCause());
+                continue;
+            }
+            System.out.printf("%s: %s by %s, %s\n", input,
+                    header.getTitle() != null ? header.getTitle() : baseName(input),
+                    header.getComposer() != null ? header.getComposer() : "unknown",
+                    header.describe());
+        }
+
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                System.err.println("Can't save the score index: " + e);
+            }
+        }
+        System.out.printf("Listed %d files in %.2f s.\n", inputs.size() - failed,
+                (System.nanoTime() - startNanos) / 1_000_000_000d);
+        return failed == 0 ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    /*
+     * Checking
+     */
+
+    /**
+     * Print everything that can't be converted in every input, in order. They're checked on the
+     * worker threads.
+     */
+    private static int check(Options options, List<Path> inputs) {
+        if (inputs.isEmpty()) {
+            System.err.println("No .mxl files found.");
+            return EXIT_USAGE;
+        }
+
+        int threads = Math.min(options.m_jobs, inputs.size());
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ScoreValidator.Report>> reports = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            reports.add(executor.submit(() -> ScoreValidator.validate(input.toFile())));
+        }
+        executor.shutdown();
+
+        int supported = 0;
+        for (int i = 0; i < inputs.size(); ++i) {
+            Path input = inputs.get(i);
+            ScoreValidator.Report report;
+            try {
+                report = reports.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                System.err.println("Interrupted.");
+                return EXIT_FAILURES;
+            } catch (ExecutionException e) {
+                System.out.printf("FAILED %s: %s\n", input, e.getCause());
+                continue;
+            }
+
+            if (report.isSupported()) {
+                supported++;
+                System.out.printf("OK %s\n", input);
+            } else {
+                System.out.printf("UNSUPPORTED %s\n", input);
+                for (String line : report.summarize()) {
+                    System.out.printf("  %s\n", line);
+                }
+            }
+        }
+
+        System.out.printf("Checked %d files in %.2f s, %d can be converted.\n", inputs.size(),
+                (System.nanoTime() - startNanos) / 1_000_000_000d, supported);
+        return supported == inputs.size() ? EXIT_OK : EXIT_FAILURES;
+    }
+
+    /*
+     * Server mode
+     */
+
+    /**
+     * Serve conversions on localhost until the process is killed.
+     */
+    private static int serve(Options options) {
+        ConversionServer server;
+        try {
+            server = new ConversionServer(createParser(options), InetAddress.getLoopbackAddress(),
+                    options.m_servePort, options.m_jobs);
+            server.start();
+        } catch (Exception e) {
+            System.err.println("Can't start the server: " + e);
+            return EXIT_FAILURES;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(SERVE_STOP_SECONDS)));
+
+        try {
+            // The server runs on its own threads.
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return EXIT_OK;
+    }
+
+    /*
+     * Watch mode
+     */
+
+    private static List<Path> watchRoots(Options options) {
+        List<Path> roots = new ArrayList<>();
+        for (String input : options.m_inputs) {
+            Path path = Path.of(input);
+            if (!Files.isDirectory(path)) {
+                throw new IllegalArgumentException("--watch expects directories: " + input);
+            }
+            roots.add(path.toAbsolutePath().normalize());
+        }
+        return roots;
+    }
+
+    /**
+     * Convert every file under the roots, then every file added or changed, until the process is
+     * killed. A change to a sidecar converts its score again too.
+     */
+    private static int watch(Options options, List<Path> roots) {
+        MxlParser parser;
+        try {
+            parser = createParser(options);
+        } catch (IOException e) {
+            System.err.println("Can't use the cache directory: " + e);
+            return EXIT_USAGE;
+        }
+
+        // Nothing may change for a while, get startup out of the way meanwhile.
+        parser.startWarmup();
+
+        // The listener only queues, so the watcher thread keeps up with the changes. A file is
+        // queued once at most, so the queue is no longer than the files watched.
+        ExecutorService executor = Executors.newFixedThreadPool(options.m_jobs);
+        Set<Path> queued = ConcurrentHashMap.newKeySet();
+        Map<Path, WatchedFile> watchedFiles = new ConcurrentHashMap<>();
+
+        try (FolderWatcher watcher = new FolderWatcher(roots, BatchConverter::isWatched,
+                options.m_settleMillis, path -> {
+                    Path input = path.getFileName().toString().toLowerCase(Locale.ROOT)
+                            .endsWith(SIDECAR_EXTENSION)
+                            ? path.resolveSibling(baseName(path) + MXL_EXTENSION)
+                            : path;
+                    // Once in the queue is enough, it reads the file when it gets to it.
+                    if (Files.isRegularFile(input) && queued.add(input)) {
+                        executor.execute(() -> {
+                            queued.remove(input);
+                            WatchedFile watched =
+                                    watchedFiles.computeIfAbsent(input, p -> new WatchedFile());
+                            convertIfChanged(parser, options, input, watched);
+                        });
+                    }
+                }))
+        {
+            System.out.printf("Watching %s on %d threads.\n", roots, options.m_jobs);
+            watcher.run();
+        } catch (IOException e) {
+            System.err.println("Can't watch " + roots + ": " + e);
+            return EXIT_FAILURES;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+        return EXIT_OK;
+    }
+
+    private static void convertIfChanged(MxlParser parser, Options options, Path input,
+            WatchedFile watched)
+    {
+        // One conversion of a file at a time, the second would write the same output.
+        synchronized (watched) {
+            Job job;
+            byte[] hash;
+            try {
+                job = jobFor(options, input);
+                hash = contentHash(input);
+            } catch (IOException e) {
+                // Deleted or renamed after it settled
+                return;
+            }
+
+            // Saving without changes, or touching the file, isn't worth converting for.
+            if (MessageDigest.isEqual(hash, watched.m_hash) && Files.isRegularFile(job.m_output)) {
+                System.out.printf("Unchanged %s\n", input);
+                return;
+            }
+
+            Result result = convert(parser, options, job);
+            if (result.m_unsupported != null) {
+                watched.m_hash = null;
+                System.out.printf("SKIPPED %s: %s\n", input,
+                        String.join("; ", result.m_unsupported.summarize()));
+            } else if (result.m_error == null) {
+                watched.m_hash = hash;
+                System.out.printf("%s (%d ms%s)\n", job.m_output, result.m_millis,
+                        issuesNote(result));
+            } else {
+                watched.m_hash = null;
+                System.out.printf("FAILED %s: %s\n", input, result.m_error);
+            }
+        }
+    }
+
+    private static boolean isWatched(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(MXL_EXTENSION) || name.endsWith(SIDECAR_EXTENSION);
+    }
+
+    /**
+     * @return a SHA-256 of the score and its sidecar, everything the output depends on that can
+     *         change while watching.
+     */
+    private static byte[] contentHash(Path input) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256.
+        }
+
+        byte[] buffer = new byte[8192];
+        try (InputStream is = Files.newInputStream(input)) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        Path sidecar = sidecarFor(input);
+        if (Files.isRegularFile(sidecar)) {
+            // Keeps "score + empty sidecar" apart from "score, no sidecar".
+            digest.update((byte) 1);
+            digest.update(Files.readAllBytes(sidecar));
+        }
+        return digest.digest();
+    }
+
+    private static Path sidecarFor(Path input) {
+        return input.resolveSibling(baseName(input) + SIDECAR_EXTENSION);
+    }
+
+    private static Properties readSidecar(Path input) throws IOException {
+        Properties properties = new Properties();
+        Path sidecar = sidecarFor(input);
+        if (Files.isRegularFile(sidecar)) {
+            try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private static int intProperty(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return intSetting("Sidecar " + key, key, value);
+    }
+
+    private static boolean booleanProperty(Properties properties, String key,
+            boolean defaultValue)
+    {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.strip());
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
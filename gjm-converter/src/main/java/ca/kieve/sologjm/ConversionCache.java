@@ -0,0 +1,332 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.module.ModuleDescriptor;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
+
+/**
+ * GJM documents already converted, on disk, keyed by a SHA-256 of the input file, the conversion
+ * parameters and the converter version.
+ *
+ * Several processes can share a cache directory. Entries are written to a temporary file and
+ * moved into place, so a reader sees a whole entry or none. Reading an entry touches its modified
+ * time, and once the directory grows past its size limit the least recently used entries are
+ * deleted, by one process at a time.
+ */
+public class ConversionCache {
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    // Bump when the same input and parameters convert to a different GJM document.
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String ENTRY_EXTENSION = ".gjm";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String LOCK_FILE = ".lock";
+
+    // Temporary files older than this were left by a process that died.
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path m_dir;
+    private final long m_maxBytes;
+    private final String m_version;
+
+    // The eviction file lock is held per process, this keeps our own threads out of each other.
+    private final Object m_evictionLock = new Object();
+
+    public ConversionCache(Path dir, long maxBytes) throws IOException {
+        String version = converterVersion();
+        m_dir = dir;
+        m_maxBytes = maxBytes;
+        m_version = (version == null ? "dev" : version) + "/" + FORMAT_VERSION;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * The cache configured with {@code -Dsologjm.cache}: a directory, or {@code off}. It defaults
+     * to {@code .sologjm/cache} in the user's home, but only for packaged builds. Classes run from
+     * a development tree have no version, and their output could change without it. The size
+     * limit is {@code -Dsologjm.cache.maxMB}.
+     *
+     * @return null if caching is off, or the directory can't be created.
+     */
+    public static ConversionCache fromSystemProperty() {
+        String dir = System.getProperty("sologjm.cache");
+        if ("off".equalsIgnoreCase(dir) || (dir == null && converterVersion() == null)) {
+            return null;
+        }
+
+        Path path = dir == null || dir.isBlank()
+                ? Path.of(System.getProperty("user.home"), ".sologjm", "cache")
+                : Path.of(dir);
+        try {
+            return inDirectory(path);
+        } catch (IOException e) {
+            Diagnostics.log(CONVERT, WARN, "WARNING: Conversion cache disabled, can't create "
+                    + path + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * A cache in the given directory, limited to {@code -Dsologjm.cache.maxMB}.
+     */
+    public static ConversionCache inDirectory(Path dir) throws IOException {
+        long maxBytes = DEFAULT_MAX_BYTES;
+        String maxMegabytes = System.getProperty("sologjm.cache.maxMB");
+        if (maxMegabytes != null && !maxMegabytes.isBlank()) {
+            maxBytes = Long.parseLong(maxMegabytes.strip()) * 1024 * 1024;
+        }
+        return new ConversionCache(dir, maxBytes);
+    }
+
+    /**
+     * @return the version from the jar manifest or module descriptor, null if there's neither.
+     */
+    private static String converterVersion() {
+        String version = ConversionCache.class.getPackage().getImplementationVersion();
+        if (version == null) {
+            ModuleDescriptor descriptor = ConversionCache.class.getModule().getDescriptor();
+            if (descriptor != null) {
+                version = descriptor.rawVersion().orElse(null);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return the key of converting {@code file} with these parameters.
+     */
+    public String key(File file, String songTitle, String songAuthor, int bpm, int trackVolume1,
+            int trackVolume2, boolean swingBeat, int octaveOffset1, int octaveOffset2)
+            throws IOException
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256.
+        }
+
+        // One line each, a title can't pass for an author.
+        String parameters = m_version + "\n"
+                + songTitle.replace("\n", "\\n") + "\n"
+                + songAuthor.replace("\n", "\\n") + "\n"
+                + bpm + "\n"
+                + trackVolume1 + "\n"
+                + trackVolume2 + "\n"
+                + swingBeat + "\n"
+                + octaveOffset1 + "\n"
+                + octaveOffset2 + "\n";
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder result = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Copy the entry for {@code key} to {@code out}, if there is one.
+     *
+     * @return false on a miss, and nothing was written.
+     */
+    public boolean read(String key, Appendable out) throws IOException {
+        Path entry = entry(key);
+        Reader reader;
+        try {
+            reader = Files.newBufferedReader(entry, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        try (reader) {
+            // Mark it as recently used. It's fine if it was evicted in between, our handle still
+            // reads it.
+            try {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                    Diagnostics.log(CONVERT, DEBUG, "Couldn't touch cache entry " + key + ": " + e);
+                }
+            }
+            copy(reader, out);
+        }
+        if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+            Diagnostics.log(CONVERT, DEBUG, "Conversion cache hit: " + key);
+        }
+        return true;
+    }
+
+    /**
+     * @return a new file to write an entry into, then {@link #publish(String, Path) publish}.
+     */
+    public Path newTempFile() throws IOException {
+        return Files.createTempFile(m_dir, "entry", TEMP_EXTENSION);
+    }
+
+    /**
+     * Copy a file written by the caller, like a temporary file before it's published.
+     */
+    public static void copy(Path path, Appendable out) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            copy(reader, out);
+        }
+    }
+
+    /**
+     * Move a complete temporary file into the cache as the entry for {@code key}, replacing any
+     * entry another process published in the meantime. Then evict if the cache is too large.
+     */
+    public void publish(String key, Path tempFile) throws IOException {
+        try {
+            Files.move(tempFile, entry(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Can't happen within one directory on the file systems we know of. Don't risk
+            // someone reading half a file.
+            Files.deleteIfExists(tempFile);
+            Diagnostics.log(CONVERT, WARN, "WARNING: Conversion cache needs atomic moves: " + e);
+            return;
+        }
+        evict();
+    }
+
+    private Path entry(String key) {
+        return m_dir.resolve(key + ENTRY_EXTENSION);
+    }
+
+    private static void copy(Reader reader, Appendable out) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            if (out instanceof Writer) {
+                ((Writer) out).write(buffer, 0, read);
+            } else if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(buffer, 0, read);
+            } else {
+                out.append(CharBuffer.wrap(buffer, 0, read));
+            }
+        }
+    }
+
+    private static class _Entry {
+        private final Path m_path;
+        private final long m_size;
+        private final long m_lastUsed;
+
+        private _Entry(Path path, long size, long lastUsed) {
+            m_path = path;
+            m_size = size;
+            m_lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Delete least recently used entries until the cache fits. Skipped if another process is
+     * already at it, it'll have the same result.
+     */
+    private void evict() throws IOException {
+        synchronized (m_evictionLock) {
+            try (FileChannel channel = FileChannel.open(m_dir.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.tryLock())
+            {
+                if (lock == null) {
+                    return;
+                }
+                evictLocked();
+            } catch (OverlappingFileLockException e) {
+                // Another cache instance in this process is evicting.
+            }
+        }
+    }
+
+    private void evictLocked() throws IOException {
+        List<_Entry> entries = new ArrayList<>();
+        long totalSize = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(m_dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                long lastModified = attributes.lastModifiedTime().toMillis();
+
+                if (name.endsWith(TEMP_EXTENSION)) {
+                    if (now - lastModified > STALE_TEMP_MILLIS) {
+                        Files.deleteIfExists(path);
+                    }
+                } else if (name.endsWith(ENTRY_EXTENSION)) {
+                    entries.add(new _Entry(path, attributes.size(), lastModified));
+                    totalSize += attributes.size();
+                }
+            }
+        }
+        if (totalSize <= m_maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong((_Entry entry) -> entry.m_lastUsed));
+        for (_Entry entry : entries) {
+            if (totalSize <= m_maxBytes) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.m_path);
+                totalSize -= entry.m_size;
+                if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                    Diagnostics.log(CONVERT, DEBUG, "Evicted cache entry " + entry.m_path);
+                }
+            } catch (IOException e) {
+                // Open in another process on Windows, it can go next time.
+                if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                    Diagnostics.log(CONVERT, DEBUG, "Couldn't evict " + entry.m_path + ": " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ca.kieve.sologjm;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Something a {@link MxlParser#setLenient lenient} conversion couldn't convert as it is in the
+ * score, and what it did instead. Immutable.
+ */
+public final class ConversionIssue {
+    public enum Action {
+        /** The element was left out, the rest of the note or measure was converted. */
+        IGNORED,
+
+        /** Converted as something close to it, the detail says what. */
+        APPROXIMATED,
+
+        /** The whole note was left out. */
+        DROPPED
+    }
+
+    private static final String TSV_HEADER = "part\tmeasure\tstaff\telement\taction\tdetail";
+
+    private final String m_partId;
+    private final String m_measure;
+    private final int m_staff;
+    private final String m_element;
+    private final Action m_action;
+    private final String m_detail;
+
+    ConversionIssue(String partId, String measure, int staff, String element, Action action,
+            String detail)
+    {
+        m_partId = partId;
+        m_measure = measure;
+        m_staff = staff;
+        m_element = element;
+        m_action = action;
+        m_detail = detail;
+    }
+
+    /**
+     * @return the id of the part it's in, or null if not known.
+     */
+    public String getPartId() {
+        return m_partId;
+    }
+
+    /**
+     * @return the number of the measure it's in, as the score has it. Null if not known.
+     */
+    public String getMeasure() {
+        return m_measure;
+    }
+
+    /**
+     * @return the staff of the note it's on, 0 if it isn't on a note.
+     */
+    public int getStaff() {
+        return m_staff;
+    }
+
+    /**
+     * @return what wasn't converted, relative to its note or measure, like "time-modification",
+     *         "@color" or "articulations/tenuto".
+     */
+    public String getElement() {
+        return m_element;
+    }
+
+    public Action getAction() {
+        return m_action;
+    }
+
+    /**
+     * @return what was done, to read after the element, like "played at its written length".
+     */
+    public String getDetail() {
+        return m_detail;
+    }
+
+    /**
+     * Write the issues as tab separated values, a header line then one line per issue.
+     */
+    public static void writeTsv(List<ConversionIssue> issues, Appendable out) throws IOException {
+        out.append(TSV_HEADER).append('\n');
+        for (ConversionIssue issue : issues) {
+            out.append(ScoreIndex.escape(issue.m_partId)).append('\t')
+                    .append(ScoreIndex.escape(issue.m_measure)).append('\t')
+                    .append(issue.m_staff > 0 ? Integer.toString(issue.m_staff) : "").append('\t')
+                    .append(ScoreIndex.escape(issue.m_element)).append('\t')
+                    .append(issue.m_action.name().toLowerCase(Locale.ROOT)).append('\t')
+                    .append(ScoreIndex.escape(issue.m_detail)).append('\n');
+        }
+    }
+
+    /**
+     * @return the issue as people read it, like "P1 measure 12, staff 1: time-modification
+     *         played at its written length".
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        if (m_partId != null) {
+            result.append(m_partId).append(' ');
+        }
+        result.append("measure ").append(m_measure == null ? "?" : m_measure);
+        if (m_staff > 0) {
+            result.append(", staff ").append(m_staff);
+        }
+        return result.append(": ").append(m_element).append(' ').append(m_detail).toString();
+    }
+}
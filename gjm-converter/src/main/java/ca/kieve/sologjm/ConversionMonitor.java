@@ -0,0 +1,35 @@
+package ca.kieve.sologjm;
+
+/**
+ * Lets whoever started a conversion follow its progress and stop it early.
+ */
+public interface ConversionMonitor {
+    /**
+     * A monitor that ignores progress and never cancels.
+     */
+    ConversionMonitor NONE = new ConversionMonitor() {
+        @Override
+        public void onProgress(int measuresRead, double fraction) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Called from the converting thread as measures are read, and once more when the output has
+     * been written.
+     *
+     * @param measuresRead the number of measures read so far, over all parts
+     * @param fraction     how far along the whole conversion is, from 0 to 1
+     */
+    void onProgress(int measuresRead, double fraction);
+
+    /**
+     * Polled from the converting thread between measures. Once this returns true the conversion
+     * stops with a {@link java.util.concurrent.CancellationException}.
+     */
+    boolean isCancelled();
+}
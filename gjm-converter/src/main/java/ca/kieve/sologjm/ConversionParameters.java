@@ -0,0 +1,111 @@
+package ca.kieve.sologjm;
+
+import java.util.Objects;
+
+/**
+ * The settings of one conversion, what {@link GjmBuilder} is constructed with.
+ */
+public final class ConversionParameters {
+    private final String m_songTitle;
+    private final String m_songAuthor;
+    private final int m_bpm;
+    private final int m_trackVolume1;
+    private final int m_trackVolume2;
+    private final boolean m_swingBeat;
+    private final int m_octaveOffset1;
+    private final int m_octaveOffset2;
+
+    public ConversionParameters(String songTitle, String songAuthor, int bpm, int trackVolume1,
+            int trackVolume2, boolean swingBeat, int octaveOffset1, int octaveOffset2)
+    {
+        m_songTitle = Objects.requireNonNull(songTitle);
+        m_songAuthor = Objects.requireNonNull(songAuthor);
+        m_bpm = bpm;
+        m_trackVolume1 = trackVolume1;
+        m_trackVolume2 = trackVolume2;
+        m_swingBeat = swingBeat;
+        m_octaveOffset1 = octaveOffset1;
+        m_octaveOffset2 = octaveOffset2;
+    }
+
+    public String getSongTitle() {
+        return m_songTitle;
+    }
+
+    public String getSongAuthor() {
+        return m_songAuthor;
+    }
+
+    public int getBpm() {
+        return m_bpm;
+    }
+
+    public int getTrackVolume1() {
+        return m_trackVolume1;
+    }
+
+    public int getTrackVolume2() {
+        return m_trackVolume2;
+    }
+
+    public boolean isSwingBeat() {
+        return m_swingBeat;
+    }
+
+    public int getOctaveOffset1() {
+        return m_octaveOffset1;
+    }
+
+    public int getOctaveOffset2() {
+        return m_octaveOffset2;
+    }
+
+    /**
+     * @return a new builder to convert with these parameters.
+     */
+    public GjmBuilder newBuilder() {
+        return new GjmBuilder(m_songTitle, m_songAuthor, m_bpm, m_trackVolume1, m_trackVolume2,
+                m_swingBeat, m_octaveOffset1, m_octaveOffset2);
+    }
+
+    /**
+     * @return a builder sharing what {@code parsed} read, with these parameters.
+     * @see GjmBuilder#withParameters
+     */
+    public GjmBuilder reuse(GjmBuilder parsed) {
+        return parsed.withParameters(m_songTitle, m_songAuthor, m_bpm, m_trackVolume1,
+                m_trackVolume2, m_swingBeat, m_octaveOffset1, m_octaveOffset2);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConversionParameters)) {
+            return false;
+        }
+        ConversionParameters other = (ConversionParameters) o;
+        return m_bpm == other.m_bpm
+                && m_trackVolume1 == other.m_trackVolume1
+                && m_trackVolume2 == other.m_trackVolume2
+                && m_swingBeat == other.m_swingBeat
+                && m_octaveOffset1 == other.m_octaveOffset1
+                && m_octaveOffset2 == other.m_octaveOffset2
+                && m_songTitle.equals(other.m_songTitle)
+                && m_songAuthor.equals(other.m_songAuthor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(m_songTitle, m_songAuthor, m_bpm, m_trackVolume1, m_trackVolume2,
+                m_swingBeat, m_octaveOffset1, m_octaveOffset2);
+    }
+
+    @Override
+    public String toString() {
+        return "'" + m_songTitle + "' by '" + m_songAuthor + "', " + m_bpm + " BPM, volumes "
+                + m_trackVolume1 + "/" + m_trackVolume2 + (m_swingBeat ? ", swing" : "")
+                + ", octaves " + m_octaveOffset1 + "/" + m_octaveOffset2;
+    }
+}
@@ -0,0 +1,112 @@
+package ca.kieve.sologjm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A finished conversion from {@link Converter}: the GJM document, and what happened making it.
+ * Immutable.
+ */
+public final class ConversionResult {
+    private final ConversionParameters m_parameters;
+    private final byte[] m_gjm;
+    private final List<String> m_warnings;
+    private final List<ConversionIssue> m_issues;
+    private final int m_measureCount;
+    private final int m_playedMeasureCount;
+    private final long m_inputBytes;
+    private final long m_elapsedNanos;
+    private final boolean m_fromCache;
+
+    ConversionResult(ConversionParameters parameters, byte[] gjm, List<String> warnings,
+            List<ConversionIssue> issues, int measureCount, int playedMeasureCount,
+            long inputBytes, long elapsedNanos, boolean fromCache)
+    {
+        m_parameters = parameters;
+        m_gjm = gjm;
+        m_warnings = List.copyOf(warnings);
+        m_issues = List.copyOf(issues);
+        m_measureCount = measureCount;
+        m_playedMeasureCount = playedMeasureCount;
+        m_inputBytes = inputBytes;
+        m_elapsedNanos = elapsedNanos;
+        m_fromCache = fromCache;
+    }
+
+    public ConversionParameters getParameters() {
+        return m_parameters;
+    }
+
+    /**
+     * @return a copy of the GJM document, UTF-8 encoded.
+     */
+    public byte[] getGjm() {
+        return m_gjm.clone();
+    }
+
+    public String getGjmString() {
+        return new String(m_gjm, StandardCharsets.UTF_8);
+    }
+
+    public int getGjmSize() {
+        return m_gjm.length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(m_gjm);
+    }
+
+    /**
+     * @return what couldn't be converted faithfully, each once, in the order they came up. Empty
+     *         for a result from the conversion cache, they were reported when it was made.
+     */
+    public List<String> getWarnings() {
+        return m_warnings;
+    }
+
+    /**
+     * @return what a lenient conversion left out or approximated, in the order it was read.
+     *         Empty for a strict one, and for a result from the conversion cache, which only
+     *         keeps conversions without issues.
+     */
+    public List<ConversionIssue> getIssues() {
+        return m_issues;
+    }
+
+    /**
+     * @return the measures in the score, -1 for a result from the conversion cache.
+     */
+    public int getMeasureCount() {
+        return m_measureCount;
+    }
+
+    /**
+     * @return the measures in the song, with repeats played out. -1 for a result from the
+     *         conversion cache.
+     */
+    public int getPlayedMeasureCount() {
+        return m_playedMeasureCount;
+    }
+
+    public long getInputBytes() {
+        return m_inputBytes;
+    }
+
+    public long getElapsedNanos() {
+        return m_elapsedNanos;
+    }
+
+    public boolean isFromCache() {
+        return m_fromCache;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionResult{" + m_gjm.length + " bytes, " + m_measureCount + " measures"
+                + (m_fromCache ? ", cached" : "") + ", " + m_warnings.size() + " warnings, "
+                + (m_issues.isEmpty() ? "" : m_issues.size() + " issues, ")
+                + m_elapsedNanos / 1_000_000 + " ms}";
+    }
+}
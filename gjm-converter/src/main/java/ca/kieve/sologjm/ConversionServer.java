@@ -0,0 +1,352 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.xml.bind.JAXBException;
+import org.audiveris.proxymusic.mxl.Mxl.MxlException;
+import org.audiveris.proxymusic.util.Marshalling.UnmarshallingException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.INFO;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
+
+/**
+ * Converts over HTTP, so tools can convert on demand without starting a JVM for every song.
+ *
+ * {@code POST /convert} with the .mxl file as the body. The query takes the sidecar keys: title,
+ * author, bpm, volume1, volume2, swing, octave1, octave2. Anything left out comes from the score,
+ * then the same defaults as the command line. The GJM document is streamed back as it's written.
+ *
+ * At most a set number of conversions run at once. Requests past that wait for a while, then get
+ * a 503 to retry later. Every request gets its own virtual thread on runtimes that have them.
+ */
+public class ConversionServer {
+    public static final String CONVERT_PATH = "/convert";
+
+    // Larger bodies get a 413, nobody's song is this big.
+    private static final long MAX_BODY_BYTES = 64L * 1024 * 1024;
+
+    // How long a request waits for a conversion slot before it gets a 503.
+    private static final long SLOT_TIMEOUT_MILLIS = 30_000;
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private static final int DEFAULT_BPM = 120;
+    private static final int DEFAULT_VOLUME_1 = 100;
+    private static final int DEFAULT_VOLUME_2 = 40;
+
+    private final MxlParser m_parser;
+    private final Semaphore m_slots;
+    private final ExecutorService m_executor;
+    private final HttpServer m_server;
+
+    /**
+     * @param port          0 for any free port, see {@link #getPort()}.
+     * @param maxConversions how many conversions run at once.
+     */
+    public ConversionServer(MxlParser parser, InetAddress address, int port, int maxConversions)
+            throws IOException
+    {
+        m_parser = parser;
+        m_slots = new Semaphore(maxConversions, true);
+        m_executor = newExecutor(maxConversions);
+        m_server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        m_server.setExecutor(m_executor);
+        m_server.createContext(CONVERT_PATH, this::handle);
+    }
+
+    /**
+     * Start accepting requests. The parser warms up in the background, requests arriving before
+     * that's done wait for it.
+     */
+    public void start() {
+        m_parser.startWarmup();
+        m_server.start();
+        Diagnostics.log(CONVERT, INFO, "Listening on http://"
+                + m_server.getAddress().getHostString() + ":" + getPort() + CONVERT_PATH);
+    }
+
+    /**
+     * Stop accepting requests, and give the ones running {@code delaySeconds} to finish.
+     */
+    public void stop(int delaySeconds) {
+        m_server.stop(delaySeconds);
+        m_executor.shutdown();
+    }
+
+    public int getPort() {
+        return m_server.getAddress().getPort();
+    }
+
+    /**
+     * A virtual thread per request on Java 21 and up, found by reflection since we build for
+     * older releases. Otherwise a fixed pool, with room for some requests to wait for a slot.
+     */
+    private static ExecutorService newExecutor(int maxConversions) {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Diagnostics.log(CONVERT, DEBUG, "No virtual threads, using a thread pool.");
+            return Executors.newFixedThreadPool(maxConversions * 2);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendError(exchange, 405, "POST the .mxl file to " + CONVERT_PATH);
+                return;
+            }
+
+            Properties settings;
+            try {
+                settings = parseQuery(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+
+            boolean acquired;
+            try {
+                acquired = m_slots.tryAcquire(SLOT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503, "Shutting down");
+                return;
+            }
+            if (!acquired) {
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                sendError(exchange, 503, "Too many conversions running, try again");
+                return;
+            }
+
+            try {
+                convert(exchange, settings);
+            } finally {
+                m_slots.release();
+            }
+        }
+    }
+
+    private void convert(HttpExchange exchange, Properties settings) throws IOException {
+        // Mxl.Input reads a zip file, not a stream.
+        Path input = Files.createTempFile("sologjm", ".mxl");
+        try {
+            if (!readBody(exchange.getRequestBody(), input)) {
+                sendError(exchange, 413, "Larger than " + MAX_BODY_BYTES + " bytes");
+                return;
+            }
+
+            ConversionParameters parameters;
+            try {
+                parameters = parameters(settings, input);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (IOException | MxlException | JAXBException | XMLStreamException e) {
+                sendError(exchange, 422, "Not a readable .mxl file: " + e);
+                return;
+            }
+
+            _ResponseStream response = new _ResponseStream(exchange);
+            try {
+                Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(response, StandardCharsets.UTF_8));
+                m_parser.parse(input.toFile(), writer, parameters.getSongTitle(),
+                        parameters.getSongAuthor(), parameters.getBpm(),
+                        parameters.getTrackVolume1(), parameters.getTrackVolume2(),
+                        parameters.isSwingBeat(), parameters.getOctaveOffset1(),
+                        parameters.getOctaveOffset2());
+                writer.close();
+            } catch (MxlException | UnmarshallingException | JAXBException
+                    | XMLStreamException e)
+            {
+                if (response.isCommitted()) {
+                    throw new IOException("Conversion failed mid response", e);
+                }
+                sendError(exchange, 422, "Not a readable .mxl file: " + e);
+            } catch (IOException | RuntimeException e) {
+                if (response.isCommitted()) {
+                    throw e;
+                }
+                Diagnostics.log(CONVERT, WARN, "WARNING: Conversion failed: " + e);
+                sendError(exchange, 500, "Conversion failed: " + e);
+            }
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * @return false if the body is too large, and wasn't all read.
+     */
+    private static boolean readBody(InputStream body, Path output) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        try (body; OutputStream os = Files.newOutputStream(output)) {
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                total += read;
+                if (total > MAX_BODY_BYTES) {
+                    return false;
+                }
+                os.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private static Properties parseQuery(String rawQuery) {
+        Properties settings = new Properties();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return settings;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals),
+                    StandardCharsets.UTF_8);
+            String value = equals < 0
+                    ? ""
+                    : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            switch (key) {
+            case "title", "author", "bpm", "volume1", "volume2", "swing", "octave1", "octave2" ->
+                    settings.setProperty(key, value);
+            default -> throw new IllegalArgumentException("Unknown parameter: " + key);
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * The requested settings, then what the score says, then the defaults.
+     */
+    private static ConversionParameters parameters(Properties settings, Path input)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        ScoreHeader header = MxlParser.readHeader(input.toFile());
+
+        String title = settings.getProperty("title");
+        if (title == null) {
+            title = header.getTitle() != null ? header.getTitle() : "Untitled";
+        }
+        String author = settings.getProperty("author");
+        if (author == null) {
+            author = header.getComposer() != null ? header.getComposer() : "Unknown";
+        }
+        int bpm = header.getTempo() != ScoreHeader.NO_TEMPO ? header.getTempo() : DEFAULT_BPM;
+
+        return new ConversionParameters(title, author,
+                intSetting(settings, "bpm", bpm, 1, 1000),
+                intSetting(settings, "volume1", DEFAULT_VOLUME_1, 0, 100),
+                intSetting(settings, "volume2", DEFAULT_VOLUME_2, 0, 100),
+                Boolean.parseBoolean(settings.getProperty("swing", "false").strip()),
+                intSetting(settings, "octave1", 0, -8, 8),
+                intSetting(settings, "octave2", 0, -8, 8));
+    }
+
+    private static int intSetting(Properties settings, String key, int defaultValue, int min,
+            int max)
+    {
+        String value = settings.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + value);
+        }
+        if (result < min || result > max) {
+            throw new IllegalArgumentException(
+                    key + " must be between " + min + " and " + max + ": " + value);
+        }
+        return result;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message)
+            throws IOException
+    {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * The response body, sending a 200 with chunked encoding on the first write. Until then the
+     * conversion can still fail with a proper error status.
+     */
+    private static class _ResponseStream extends OutputStream {
+        private final HttpExchange m_exchange;
+        private OutputStream m_body = null;
+
+        private _ResponseStream(HttpExchange exchange) {
+            m_exchange = exchange;
+        }
+
+        private boolean isCommitted() {
+            return m_body != null;
+        }
+
+        private OutputStream body() throws IOException {
+            if (m_body == null) {
+                m_exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                m_exchange.sendResponseHeaders(200, 0);
+                m_body = m_exchange.getResponseBody();
+            }
+            return m_body;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            body().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            body().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (m_body != null) {
+                m_body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // An empty document is still a 200.
+            body().close();
+        }
+    }
+}
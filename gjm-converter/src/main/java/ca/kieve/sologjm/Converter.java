@@ -0,0 +1,119 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.MxlParser.ScoreReader;
+import jakarta.xml.bind.JAXBException;
+import org.audiveris.proxymusic.mxl.Mxl.MxlException;
+import org.audiveris.proxymusic.util.Marshalling.UnmarshallingException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Converts MXL files to GJM documents in memory. It holds nothing but its configuration, and the
+ * caches it's given are thread safe, so one converter can run any number of conversions at once,
+ * from any threads. The XML parsers underneath share one JAXB context and input factory, with an
+ * unmarshaller per thread.
+ */
+public final class Converter {
+    // Most documents fit, the rest grow the buffer a few times.
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final MxlParser m_parser;
+    private final ScoreReader m_scoreReader;
+
+    /**
+     * A converter with the reader from {@code -Dsologjm.reader}, and no caches.
+     */
+    public Converter() {
+        this(ScoreReader.fromSystemProperty(), null, null);
+    }
+
+    /**
+     * @param cache      finished conversions on disk, null for none.
+     * @param modelCache scores read, in memory, null for none.
+     */
+    public Converter(ScoreReader scoreReader, ConversionCache cache, ScoreModelCache modelCache) {
+        this(scoreReader, cache, modelCache, false);
+    }
+
+    /**
+     * @param lenient convert what can be and report the rest, see {@link MxlParser#setLenient}.
+     */
+    public Converter(ScoreReader scoreReader, ConversionCache cache, ScoreModelCache modelCache,
+            boolean lenient)
+    {
+        MxlParser parser = new MxlParser(scoreReader, cache);
+        parser.setModelCache(modelCache);
+        parser.setLenient(lenient);
+        m_parser = parser;
+        m_scoreReader = scoreReader;
+    }
+
+    /**
+     * Start warming up in the background, see {@link Warmup}.
+     */
+    public CompletableFuture<Void> startWarmup() {
+        return Warmup.start(m_scoreReader);
+    }
+
+    public boolean isWarm() {
+        return Warmup.isDone(m_scoreReader);
+    }
+
+    /**
+     * Wait for the warm-up, if it was started. Converting does this by itself, this is only for
+     * callers that want to say they're waiting.
+     */
+    public void awaitWarmup() {
+        Warmup.await(m_scoreReader);
+    }
+
+    public ConversionResult convert(Path input, ConversionParameters parameters)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        return convert(input, parameters, ConversionMonitor.NONE);
+    }
+
+    /**
+     * @throws java.util.concurrent.CancellationException if the monitor cancelled the conversion.
+     */
+    public ConversionResult convert(Path input, ConversionParameters parameters,
+            ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        long startNanos = System.nanoTime();
+        long inputBytes = Files.size(input);
+
+        ByteArrayOutputStream gjm = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        Writer writer = new OutputStreamWriter(gjm, StandardCharsets.UTF_8);
+        GjmBuilder gjmBuilder = m_parser.parseWithBuilder(input.toFile(), writer,
+                parameters.getSongTitle(), parameters.getSongAuthor(), parameters.getBpm(),
+                parameters.getTrackVolume1(), parameters.getTrackVolume2(),
+                parameters.isSwingBeat(), parameters.getOctaveOffset1(),
+                parameters.getOctaveOffset2(), monitor);
+        writer.flush();
+
+        if (gjmBuilder == null) {
+            return new ConversionResult(parameters, gjm.toByteArray(), List.of(), List.of(), -1,
+                    -1, inputBytes, System.nanoTime() - startNanos, true);
+        }
+        // A warning per note isn't more helpful than one.
+        List<String> warnings = new ArrayList<>(new LinkedHashSet<>(gjmBuilder.getWarnings()));
+        return new ConversionResult(parameters, gjm.toByteArray(), warnings,
+                gjmBuilder.getIssues(), gjmBuilder.getMeasureCount(),
+                gjmBuilder.getPlayedMeasureCount(), inputBytes, System.nanoTime() - startNanos,
+                false);
+    }
+}
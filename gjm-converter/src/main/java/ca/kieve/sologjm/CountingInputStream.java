@@ -0,0 +1,60 @@
+package ca.kieve.sologjm;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keeps count of how many bytes have been read through it.
+ */
+class CountingInputStream extends FilterInputStream {
+    private long m_count;
+    private long m_mark;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+        m_count = 0;
+        m_mark = 0;
+    }
+
+    public long getCount() {
+        return m_count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result >= 0) {
+            m_count++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = super.read(b, off, len);
+        if (result > 0) {
+            m_count += result;
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(n);
+        m_count += result;
+        return result;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        super.mark(readLimit);
+        m_mark = m_count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+        m_count = m_mark;
+    }
+}
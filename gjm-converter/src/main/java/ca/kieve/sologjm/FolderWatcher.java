@@ -0,0 +1,232 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+
+/**
+ * Watches directory trees for files being created or changed, and reports each once it has
+ * stopped changing for a while, so a file still being copied in isn't reported half written.
+ */
+class FolderWatcher implements Closeable {
+    private static final class _Pending {
+        private long m_size;
+        private long m_lastModified;
+        private long m_dueMillis;
+
+        private _Pending(long size, long lastModified, long dueMillis) {
+            m_size = size;
+            m_lastModified = lastModified;
+            m_dueMillis = dueMillis;
+        }
+    }
+
+    private final List<Path> m_roots;
+    private final Predicate<Path> m_filter;
+    private final long m_settleMillis;
+    private final Consumer<Path> m_listener;
+
+    private final WatchService m_watchService;
+    private final Map<WatchKey, Path> m_directories;
+    private final Map<Path, _Pending> m_pending;
+
+    /**
+     * @param filter       which files to report.
+     * @param settleMillis how long a file must stay the same size and modified time before it's
+     *                     reported.
+     * @param listener     called from the thread running {@link #run()}, keep it short.
+     */
+    FolderWatcher(List<Path> roots, Predicate<Path> filter, long settleMillis,
+            Consumer<Path> listener)
+            throws IOException
+    {
+        m_roots = roots;
+        m_filter = filter;
+        m_settleMillis = settleMillis;
+        m_listener = listener;
+        m_watchService = FileSystems.getDefault().newWatchService();
+        m_directories = new HashMap<>();
+        m_pending = new HashMap<>();
+    }
+
+    /**
+     * Report every file already there, then every change, until interrupted or closed.
+     */
+    public void run() throws IOException, InterruptedException {
+        for (Path root : m_roots) {
+            register(root, true);
+        }
+
+        try {
+            while (true) {
+                WatchKey key = m_pending.isEmpty()
+                        ? m_watchService.take()
+                        : m_watchService.poll(nextDueMillis(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handle(key);
+                }
+                reportSettled();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed, we're done
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_watchService.close();
+    }
+
+    /**
+     * Watch a directory and everything under it.
+     *
+     * @param reportExisting report the files already there right away, rather than when they
+     *                       change.
+     */
+    private void register(Path directory, boolean reportExisting) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            registerAll(stream, reportExisting);
+        } catch (NoSuchFileException e) {
+            // Removed before we got to it
+        } catch (UncheckedIOException e) {
+            // Something under it was removed while walking, take what we got.
+            if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                Diagnostics.log(CONVERT, DEBUG, "Couldn't watch all of " + directory + ": " + e);
+            }
+        }
+    }
+
+    private void registerAll(Stream<Path> stream, boolean reportExisting) throws IOException {
+        Iterator<Path> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            Path path = iterator.next();
+            if (Files.isDirectory(path)) {
+                WatchKey key = path.register(m_watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                m_directories.put(key, path);
+            } else if (m_filter.test(path)) {
+                if (reportExisting) {
+                    m_listener.accept(path);
+                } else {
+                    changed(path);
+                }
+            }
+        }
+    }
+
+    private void handle(WatchKey key) throws IOException {
+        Path directory = m_directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, look at everything again.
+                for (Path root : m_roots) {
+                    register(root, false);
+                }
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // Files can land in it before it's registered, so look at what's there.
+                    register(path, false);
+                }
+            } else if (m_filter.test(path)) {
+                changed(path);
+            }
+        }
+
+        if (!key.reset()) {
+            m_directories.remove(key);
+        }
+    }
+
+    private void changed(Path path) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Gone already
+            m_pending.remove(path);
+            return;
+        }
+        long dueMillis = System.currentTimeMillis() + m_settleMillis;
+        _Pending pending = m_pending.get(path);
+        if (pending == null) {
+            m_pending.put(path, new _Pending(attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), dueMillis));
+        } else {
+            pending.m_size = attributes.size();
+            pending.m_lastModified = attributes.lastModifiedTime().toMillis();
+            pending.m_dueMillis = dueMillis;
+        }
+    }
+
+    private long nextDueMillis() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (_Pending pending : m_pending.values()) {
+            next = Math.min(next, pending.m_dueMillis);
+        }
+        return Math.max(1, next - now);
+    }
+
+    private void reportSettled() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, _Pending>> iterator = m_pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, _Pending> entry = iterator.next();
+            _Pending pending = entry.getValue();
+            if (pending.m_dueMillis > now) {
+                continue;
+            }
+
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry.getKey(), BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                iterator.remove();
+                continue;
+            }
+
+            // Still being written without modify events, like over some network shares.
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (attributes.size() != pending.m_size || lastModified != pending.m_lastModified) {
+                pending.m_size = attributes.size();
+                pending.m_lastModified = lastModified;
+                pending.m_dueMillis = now + m_settleMillis;
+                continue;
+            }
+
+            iterator.remove();
+            m_listener.accept(entry.getKey());
+        }
+    }
+}
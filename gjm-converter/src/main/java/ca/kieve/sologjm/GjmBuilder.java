@@ -28,15 +28,24 @@ import org.audiveris.proxymusic.Tie;
 import org.audiveris.proxymusic.Tied;
 import org.audiveris.proxymusic.Time;
 
+import ca.kieve.sologjm.ConversionIssue.Action;
+import ca.kieve.sologjm.debug.Diagnostics;
 import jakarta.xml.bind.JAXBElement;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
-import static ca.kieve.sologjm.debug.DebugUtils.p;
+import static ca.kieve.sologjm.debug.Diagnostics.Category.BUILD;
+import static ca.kieve.sologjm.debug.Diagnostics.Category.PARSE;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.ERROR;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.TRACE;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
 
 public class GjmBuilder {
     private enum _Clef {
@@ -62,13 +71,26 @@ public class GjmBuilder {
             m_durationMultiplier = durationMultiplier;
         }
 
+        /**
+         * @return null if GJM has no such note.
+         */
         public static _NoteType fromMxl(String mxlId) {
             for (_NoteType note : values()) {
                 if (note.m_mxlId.equals(mxlId)) {
                     return note;
                 }
             }
-            throw new UnsupportedOperationException("Unsupported Note Duration: " + mxlId);
+            return null;
+        }
+
+        /**
+         * @return the closest note GJM has to one it doesn't, like a 64th.
+         */
+        public static _NoteType nearest(String mxlId) {
+            return switch (mxlId) {
+            case "breve", "long", "maxima" -> WHOLE;
+            default -> THIRTY_SECOND; // 64th and shorter
+            };
         }
 
         public static _NoteType fromDurationMultiplier(int duration) {
@@ -103,98 +125,297 @@ public class GjmBuilder {
             m_sharpScale = sharpScale;
             m_flatScale = flatScale;
         }
+
+        public static _Step fromMxl(char step) {
+            return switch (step) {
+            case 'C' -> C;
+            case 'D' -> D;
+            case 'E' -> E;
+            case 'F' -> F;
+            case 'G' -> G;
+            case 'A' -> A;
+            case 'B' -> B;
+            default -> throw new IllegalArgumentException("Unsupported step: " + step);
+            };
+        }
     }
 
     private enum _Accidental {
-        FLAT("Flat"),
-        NATURAL("Natural"),
-        SHARP("Sharp");
+        FLAT("flat", "Flat"),
+        NATURAL("natural", "Natural"),
+        SHARP("sharp", "Sharp");
 
+        private final String m_mxlId;
         private final String m_gjmString;
 
-        _Accidental(String gjmString) {
+        _Accidental(String mxlId, String gjmString) {
+            m_mxlId = mxlId;
             m_gjmString = gjmString;
         }
 
-        public static _Accidental fromMxl(Accidental accidental) {
-            return switch (accidental.getValue()) {
-            case FLAT -> FLAT;
-            case NATURAL -> NATURAL;
-            case SHARP -> SHARP;
-            default -> throw new IllegalArgumentException("Unsupported accidental");
-            };
+        /**
+         * @return null if GJM has no such accidental.
+         */
+        public static _Accidental fromMxl(String mxlId) {
+            for (_Accidental accidental : values()) {
+                if (accidental.m_mxlId.equals(mxlId)) {
+                    return accidental;
+                }
+            }
+            return null;
         }
     }
 
-    private static class _Pitch {
-        private int m_octave; // 0 - 9
-        private _Step m_step;
+    /**
+     * What a note can have that GJM can't play, in the order they're checked. Readers mark what
+     * they find on the {@link NoteEvent}, and the builder fails with the message or, leniently,
+     * goes on as the action says.
+     */
+    enum Unsupported {
+        GRACE("note grace", "grace", Action.DROPPED, "note left out"),
+        CUE("note cue", "cue", Action.DROPPED, "note left out"),
+        UNPITCHED("note unpitch", "unpitched", Action.APPROXIMATED, "played as a rest"),
+        INSTRUMENT("note instrument", "instrument"),
+        FOOTNOTE("note footnote", "footnote"),
+        LEVEL("note level", "level"),
+        TIME_MODIFICATION("note timeModification", "time-modification", Action.APPROXIMATED,
+                "played at its written length"),
+        NOTEHEAD("note notehead", "notehead"),
+        NOTEHEAD_TEXT("note noteheadText", "notehead-text"),
+        PLAY("note play", "play"),
+        DYNAMICS("note dynamics", "@dynamics"),
+        END_DYNAMICS("note endDynamics", "@end-dynamics"),
+        ATTACK("note attack", "@attack"),
+        RELEASE("note release", "@release"),
+        TIME_ONLY("note timeOnly", "@time-only"),
+        PIZZICATO("note pizzicato", "@pizzicato"),
+        FONT_FAMILY("note fontFamily", "@font-family"),
+        FONT_STYLE("note fontStyle", "@font-style"),
+        FONT_SIZE("note fontSize", "@font-size"),
+        FONT_WEIGHT("note fontWeight", "@font-weight"),
+        COLOR("note color", "@color"),
+        RELATIVE_X("note relativeX", "@relative-x"),
+        RELATIVE_Y("note relativeY", "@relative-y"),
+        PRINT_DOT("note printDot", "@print-dot"),
+        PRINT_LYRIC("note printLyric", "@print-lyric"),
+        PRINT_SPACING("note printSpacing", "@print-spacing"),
+        NOTATION("Unknown notation type.", "notations"),
+        ARTICULATION("Only staccato articulation supported: ", "articulations"),
+        TYPE_SIZE("noteType Size", "type/@size"),
+        REST_MEASURE("rest measure", "rest/@measure"),
+        TIE_TIME_ONLY("tie timeOnly", "tie/@time-only"),
+        DOTS("Only one dot supported... for now", "dot", Action.IGNORED,
+                "after the first left out"),
+        DOT_PLACEMENT("Dot placement not supported", "dot/@placement"),
+        MICROTONE("Microtones not supported", "pitch/alter", Action.APPROXIMATED,
+                "rounded to a semitone");
+
+        private final String m_message;
+        private final String m_element;
+        private final Action m_action;
+        private final String m_detail;
+
+        Unsupported(String message, String element) {
+            this(message, element, Action.IGNORED, "left out");
+        }
 
-        // TODO: This basically automatically calculates the note based on key and alterant.
-        //       I'm ignoring this for now though.
-        private int m_alterPitch; // -1 = flat, 1 = sharp, microtones not supported
+        Unsupported(String message, String element, Action action, String detail) {
+            m_message = message;
+            m_element = element;
+            m_action = action;
+            m_detail = detail;
+        }
 
-        private _Accidental m_accidental = null;
+        private String message(NoteEvent note) {
+            return this == ARTICULATION ? m_message + note.m_articulation : m_message;
+        }
 
-        public _Pitch deepClone() {
-            _Pitch result = new _Pitch();
-            result.m_octave = m_octave;
-            result.m_step = m_step;
-            result.m_alterPitch = m_alterPitch;
-            result.m_accidental = m_accidental;
-            return result;
+        private String element(NoteEvent note) {
+            return switch (this) {
+            case NOTATION -> m_element + "/" + note.m_notation;
+            case ARTICULATION -> m_element + "/" + note.m_articulation;
+            default -> m_element;
+            };
         }
     }
 
-    private static class _Note {
-        private _NoteType m_noteType;
-        private boolean m_isRest;
-        private List<_Pitch> m_pitches = new ArrayList<>(3);
-        private boolean m_isDotted;
-        private boolean m_isTriplet;
-        private boolean m_isArpeggiate;
-
-        private boolean m_tieStart;
-        private boolean m_tieEnd;
-
-        // Swing stuff
-        private boolean m_isSwing;
-        private int m_swingIndexOverride;
-        private double m_swingDurationMultiplier;
-
-        public _Note deepClone() {
-            _Note result = new _Note();
-            result.m_noteType = m_noteType;
-            result.m_isRest = m_isRest;
-            result.m_pitches = new ArrayList<>();
-            for (_Pitch pitch : m_pitches) {
-                result.m_pitches.add(pitch.deepClone());
+    private static final _NoteType[] NOTE_TYPES = _NoteType.values();
+    private static final _Step[] STEPS = _Step.values();
+    private static final _Accidental[] ACCIDENTALS = _Accidental.values();
+    private static final Unsupported[] UNSUPPORTED = Unsupported.values();
+
+    // Note flags
+    private static final int REST = 1;
+    private static final int DOTTED = 1 << 1;
+    private static final int TRIPLET = 1 << 2;
+    private static final int ARPEGGIATE = 1 << 3;
+    private static final int TIE_START = 1 << 4;
+    private static final int TIE_END = 1 << 5;
+
+    // Which note of a swung pair a note is. The lead note is split in two tied notes.
+    private static final int SWING_NONE = 0;
+    private static final int SWING_LEAD = 1;
+    private static final int SWING_LEAD_TIED = 2;
+    private static final int SWING_TRAIL = 3;
+
+    private static final int[] SWING_STAMP_INDEX = { 0, 5, 5, 6 };
+    private static final double[] SWING_DURATION_MULTIPLIER = { 1d, 1.25d, 0.625d, 0.75d };
+
+    /*
+     * A pitch is packed in an int:
+     *   bits 16+   octave (signed)
+     *   bits 8-15  alter (signed)
+     *   bits 4-7   step ordinal
+     *   bits 0-3   accidental ordinal + 1, 0 for none
+     */
+
+    private static int packPitch(int octave, _Step step, int alter, _Accidental accidental) {
+        return (octave << 16)
+                | ((alter & 0xFF) << 8)
+                | (step.ordinal() << 4)
+                | (accidental == null ? 0 : accidental.ordinal() + 1);
+    }
+
+    private static int pitchOctave(int pitch) {
+        return pitch >> 16;
+    }
+
+    // TODO: This basically automatically calculates the note based on key and alterant.
+    //       I'm ignoring this for now though.
+    private static int pitchAlter(int pitch) {
+        return (byte) (pitch >> 8); // -1 = flat, 1 = sharp, microtones not supported
+    }
+
+    private static _Step pitchStep(int pitch) {
+        return STEPS[(pitch >> 4) & 0xF];
+    }
+
+    private static _Accidental pitchAccidental(int pitch) {
+        int accidental = pitch & 0xF;
+        return accidental == 0 ? null : ACCIDENTALS[accidental - 1];
+    }
+
+    /**
+     * All the notes of one staff, over all measures, as parallel arrays. The pitches of a note are
+     * a contiguous range of a flat pitch pool, which tracks derived from this one (swing) share
+     * instead of copying.
+     */
+    private static final class _Track {
+        // Per note
+        private byte[] m_noteTypes = new byte[64];
+        private byte[] m_flags = new byte[64];
+        private byte[] m_swing = new byte[64];
+        private int[] m_pitchStarts = new int[64];
+        private short[] m_pitchCounts = new short[64];
+        private int m_noteCount = 0;
+
+        // Per measure, the index just past its last note. Notes after the last measure belong to
+        // the one still being parsed.
+        private int[] m_measureEnds = new int[16];
+        private int m_measureCount = 0;
+
+        private int[] m_pitches;
+        private int m_pitchCount;
+
+        private _Track() {
+            this(new int[64], 0);
+        }
+
+        private _Track(int[] pitches, int pitchCount) {
+            m_pitches = pitches;
+            m_pitchCount = pitchCount;
+        }
+
+        /**
+         * @return a new, empty track that shares this one's pitch pool.
+         */
+        private _Track derive() {
+            return new _Track(m_pitches, m_pitchCount);
+        }
+
+        private int measureStart(int measure) {
+            return measure == 0 ? 0 : m_measureEnds[measure - 1];
+        }
+
+        private int measureEnd(int measure) {
+            return m_measureEnds[measure];
+        }
+
+        private _NoteType noteType(int note) {
+            return NOTE_TYPES[m_noteTypes[note]];
+        }
+
+        private boolean is(int note, int flag) {
+            return (m_flags[note] & flag) != 0;
+        }
+
+        private void endMeasure() {
+            if (m_measureCount == m_measureEnds.length) {
+                m_measureEnds = Arrays.copyOf(m_measureEnds, m_measureCount * 2);
             }
-            result.m_isDotted = m_isDotted;
-            result.m_isTriplet = m_isTriplet;
-            result.m_isArpeggiate = m_isArpeggiate;
-            result.m_tieStart = m_tieStart;
-            result.m_tieEnd = m_tieEnd;
-            result.m_isSwing = m_isSwing;
-            result.m_swingIndexOverride = m_swingIndexOverride;
-            result.m_swingDurationMultiplier = m_swingDurationMultiplier;
-            return result;
+            m_measureEnds[m_measureCount++] = m_noteCount;
         }
-    }
 
-    private static class _Measure {
-        List<_Note> m_notes1 = new ArrayList<>();
-        List<_Note> m_notes2 = new ArrayList<>();
+        private void ensureNoteCapacity(int count) {
+            if (count > m_noteTypes.length) {
+                int capacity = Math.max(count, m_noteTypes.length * 2);
+                m_noteTypes = Arrays.copyOf(m_noteTypes, capacity);
+                m_flags = Arrays.copyOf(m_flags, capacity);
+                m_swing = Arrays.copyOf(m_swing, capacity);
+                m_pitchStarts = Arrays.copyOf(m_pitchStarts, capacity);
+                m_pitchCounts = Arrays.copyOf(m_pitchCounts, capacity);
+            }
+        }
 
-        public _Measure deepClone() {
-            _Measure result = new _Measure();
-            for (_Note note : m_notes1) {
-                result.m_notes1.add(note.deepClone());
+        private void ensurePitchCapacity(int count) {
+            if (count > m_pitches.length) {
+                m_pitches = Arrays.copyOf(m_pitches, Math.max(count, m_pitches.length * 2));
             }
-            for (_Note note : m_notes2) {
-                result.m_notes2.add(note.deepClone());
+        }
+
+        /**
+         * @return the index of the new note, with no pitches.
+         */
+        private int addNote(_NoteType noteType, int flags) {
+            ensureNoteCapacity(m_noteCount + 1);
+            int note = m_noteCount++;
+            m_noteTypes[note] = (byte) noteType.ordinal();
+            m_flags[note] = (byte) flags;
+            m_swing[note] = SWING_NONE;
+            m_pitchStarts[note] = m_pitchCount;
+            m_pitchCounts[note] = 0;
+            return note;
+        }
+
+        private void addPitch(int note, int pitch) {
+            int start = m_pitchStarts[note];
+            int count = m_pitchCounts[note];
+            if (start + count != m_pitchCount) {
+                // Another note's pitches came after this one's, move them to the end of the pool.
+                ensurePitchCapacity(m_pitchCount + count + 1);
+                System.arraycopy(m_pitches, start, m_pitches, m_pitchCount, count);
+                m_pitchStarts[note] = m_pitchCount;
+                m_pitchCount += count;
             }
-            return result;
+            ensurePitchCapacity(m_pitchCount + 1);
+            m_pitches[m_pitchCount++] = pitch;
+            m_pitchCounts[note]++;
+        }
+
+        /**
+         * Copy a note from a track sharing this one's pitch pool.
+         *
+         * @return the index of the copy.
+         */
+        private int copyNote(_Track source, int note) {
+            ensureNoteCapacity(m_noteCount + 1);
+            int copy = m_noteCount++;
+            m_noteTypes[copy] = source.m_noteTypes[note];
+            m_flags[copy] = source.m_flags[note];
+            m_swing[copy] = source.m_swing[note];
+            m_pitchStarts[copy] = source.m_pitchStarts[note];
+            m_pitchCounts[copy] = source.m_pitchCounts[note];
+            return copy;
         }
     }
 
@@ -204,6 +425,166 @@ public class GjmBuilder {
         int times = 1;
     }
 
+    /**
+     * The parts of an MXL {@code <attributes>} element we care about, as primitives. Instances are
+     * meant to be reused by readers, call {@link #clear()} before filling one in.
+     */
+    public static final class AttributesEvent {
+        int m_keyCount;
+        int m_fifths;
+        boolean m_isKeyNonTraditional; // The first key has no fifths
+
+        int m_timeCount;
+        int m_beats;
+        int m_beatType;
+        boolean m_isTimeUnmeasured; // The first time has no beats or beat type
+
+        int m_clefCount;
+        String m_clefSign1;
+        String m_clefSign2;
+
+        public void clear() {
+            m_keyCount = 0;
+            m_fifths = 0;
+            m_isKeyNonTraditional = false;
+            m_timeCount = 0;
+            m_beats = 0;
+            m_beatType = 0;
+            m_isTimeUnmeasured = false;
+            m_clefCount = 0;
+            m_clefSign1 = null;
+            m_clefSign2 = null;
+        }
+
+        /**
+         * @return a new event with the same values, to keep after this one is reused.
+         */
+        public AttributesEvent copy() {
+            AttributesEvent result = new AttributesEvent();
+            result.m_keyCount = m_keyCount;
+            result.m_fifths = m_fifths;
+            result.m_isKeyNonTraditional = m_isKeyNonTraditional;
+            result.m_timeCount = m_timeCount;
+            result.m_beats = m_beats;
+            result.m_beatType = m_beatType;
+            result.m_isTimeUnmeasured = m_isTimeUnmeasured;
+            result.m_clefCount = m_clefCount;
+            result.m_clefSign1 = m_clefSign1;
+            result.m_clefSign2 = m_clefSign2;
+            return result;
+        }
+    }
+
+    /**
+     * The parts of an MXL {@code <barline>} element we care about, as primitives. Instances are
+     * meant to be reused by readers, call {@link #clear()} before filling one in.
+     */
+    public static final class BarlineEvent {
+        boolean m_hasRepeat;
+        boolean m_repeatForward;
+        int m_repeatTimes = -1; // -1 = not specified
+
+        public void clear() {
+            m_hasRepeat = false;
+            m_repeatForward = false;
+            m_repeatTimes = -1;
+        }
+
+        /**
+         * @return a new event with the same values, to keep after this one is reused.
+         */
+        public BarlineEvent copy() {
+            BarlineEvent result = new BarlineEvent();
+            result.m_hasRepeat = m_hasRepeat;
+            result.m_repeatForward = m_repeatForward;
+            result.m_repeatTimes = m_repeatTimes;
+            return result;
+        }
+    }
+
+    /**
+     * The parts of an MXL {@code <note>} element we care about, as primitives. Instances are
+     * meant to be reused by readers, call {@link #clear()} before filling one in.
+     *
+     * Readers mark what they find that can't be converted, the builder decides what to do about
+     * it. See {@link Unsupported}.
+     */
+    public static final class NoteEvent {
+        int m_staff = 1;
+        boolean m_isChord;
+        boolean m_isRest;
+        String m_type; // MXL id, null = whole note
+
+        boolean m_hasPitch;
+        char m_step;
+        int m_octave;
+        int m_alter;
+        String m_accidental; // MXL id, null = none
+
+        boolean m_isDotted;
+        boolean m_tieStart;
+        boolean m_tieEnd;
+        boolean m_isStaccato;
+        boolean m_isArpeggiate;
+
+        long m_unsupported; // A bit per Unsupported ordinal
+        String m_notation; // The first unknown one
+        String m_articulation; // The first unsupported one
+
+        void mark(Unsupported unsupported) {
+            m_unsupported |= 1L << unsupported.ordinal();
+        }
+
+        boolean has(Unsupported unsupported) {
+            return (m_unsupported & 1L << unsupported.ordinal()) != 0;
+        }
+
+        public void clear() {
+            m_staff = 1;
+            m_isChord = false;
+            m_isRest = false;
+            m_type = null;
+            m_hasPitch = false;
+            m_step = 0;
+            m_octave = 0;
+            m_alter = 0;
+            m_accidental = null;
+            m_isDotted = false;
+            m_tieStart = false;
+            m_tieEnd = false;
+            m_isStaccato = false;
+            m_isArpeggiate = false;
+            m_unsupported = 0;
+            m_notation = null;
+            m_articulation = null;
+        }
+
+        /**
+         * @return a new event with the same values, to keep after this one is reused.
+         */
+        public NoteEvent copy() {
+            NoteEvent result = new NoteEvent();
+            result.m_staff = m_staff;
+            result.m_isChord = m_isChord;
+            result.m_isRest = m_isRest;
+            result.m_type = m_type;
+            result.m_hasPitch = m_hasPitch;
+            result.m_step = m_step;
+            result.m_octave = m_octave;
+            result.m_alter = m_alter;
+            result.m_accidental = m_accidental;
+            result.m_isDotted = m_isDotted;
+            result.m_tieStart = m_tieStart;
+            result.m_tieEnd = m_tieEnd;
+            result.m_isStaccato = m_isStaccato;
+            result.m_isArpeggiate = m_isArpeggiate;
+            result.m_unsupported = m_unsupported;
+            result.m_notation = m_notation;
+            result.m_articulation = m_articulation;
+            return result;
+        }
+    }
+
     private static final int BASE_DURATION = 125; // MS, length of a 1/64 note. 125 = 60bpm
     private static final int GJM_PITCH_OFFSET = 4; // Octave C1 starts at 4.
 
@@ -227,13 +608,34 @@ public class GjmBuilder {
     private _Clef m_clef1;
     private _Clef m_clef2;
 
-    private List<_Measure> m_measures = new ArrayList<>();
+    private _Track m_track1 = new _Track();
+    private _Track m_track2 = new _Track();
     private int m_currentMeasureId = 0;
-    private _Measure m_currentMeasure = new _Measure();
 
     private List<_Repeat> m_repeats = new ArrayList<>();
     private _Repeat m_currentRepeat = null;
 
+    // Source measure to write for each measure of the song, once repeats are resolved.
+    private int[] m_measurePlan = null;
+
+    // Track 1 as parsed, m_track1 is replaced with a swung copy by post processing.
+    private _Track m_parsedTrack1 = null;
+    private boolean m_postProcessed = false;
+
+    // Also logged as they happen. What was read is shared with builders for other parameters, so
+    // its warnings are too. The write warnings are only for the last write.
+    private final List<String> m_parseWarnings = new ArrayList<>();
+    private final List<String> m_writeWarnings = new ArrayList<>();
+
+    // Leniently, what can't be converted is reported here instead of thrown.
+    private boolean m_lenient = false;
+    private final List<ConversionIssue> m_issues = new ArrayList<>();
+
+    // Where in the score the elements parsed next are, for issues.
+    private String m_partId = null;
+    private String m_measureNumber = null;
+    private int m_partStartMeasure = 0;
+
     public GjmBuilder(String notationName, String notationAuthor, int bpm, int trackVolume1,
             int trackVolume2, boolean swingBeat, int octaveOffset1, int octaveOffset2)
     {
@@ -247,22 +649,157 @@ public class GjmBuilder {
         m_octaveOffset2 = octaveOffset2;
     }
 
-    private static void uo(Object object, String message) {
-        if (object == null) return;
-        p(object);
-        throw new UnsupportedOperationException(message);
+    /**
+     * A builder with what this one parsed, and new parameters. Nothing is parsed or copied again,
+     * the notes are shared, so don't parse anything more into either builder.
+     *
+     * BPM, volumes, octave offsets and the song information only matter when writing. If this
+     * builder was post processed with the same swing, the result is post processed too.
+     */
+    public GjmBuilder withParameters(String notationName, String notationAuthor, int bpm,
+            int trackVolume1, int trackVolume2, boolean swingBeat, int octaveOffset1,
+            int octaveOffset2)
+    {
+        GjmBuilder result = new GjmBuilder(notationName, notationAuthor, bpm, trackVolume1,
+                trackVolume2, swingBeat, octaveOffset1, octaveOffset2);
+        result.m_key = m_key;
+        result.m_beatsPerMeasure = m_beatsPerMeasure;
+        result.m_beatsUnit = m_beatsUnit;
+        result.m_clef1 = m_clef1;
+        result.m_clef2 = m_clef2;
+        result.m_track1 = m_postProcessed ? m_parsedTrack1 : m_track1;
+        result.m_track2 = m_track2;
+        result.m_currentMeasureId = m_currentMeasureId;
+        result.m_repeats = m_repeats;
+        result.m_parseWarnings.addAll(m_parseWarnings);
+        result.m_lenient = m_lenient;
+        result.m_issues.addAll(m_issues);
+
+        if (m_postProcessed && swingBeat == m_swingBeat) {
+            result.m_parsedTrack1 = m_parsedTrack1;
+            result.m_track1 = m_track1;
+            result.m_measurePlan = m_measurePlan;
+            result.m_postProcessed = true;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of measures read so far, before repeats are expanded.
+     */
+    public int getMeasureCount() {
+        return m_track1.m_measureCount;
+    }
+
+    /**
+     * @return the number of measures played, with repeats. Only known once post processed or
+     *         written, -1 before.
+     */
+    public int getPlayedMeasureCount() {
+        return m_measurePlan == null ? -1 : m_measurePlan.length;
+    }
+
+    /**
+     * @return the warnings about what was read, then about the last write, in order.
+     */
+    public List<String> getWarnings() {
+        List<String> result = new ArrayList<>(m_parseWarnings.size() + m_writeWarnings.size());
+        result.addAll(m_parseWarnings);
+        result.addAll(m_writeWarnings);
+        return result;
+    }
+
+    private void warn(String message) {
+        Diagnostics.log(BUILD, WARN, message);
+        m_parseWarnings.add(message);
+    }
+
+    /**
+     * Leniently, what can't be converted is left out or approximated and reported as
+     * {@link #getIssues() issues}, instead of failing the conversion. Set before parsing.
+     */
+    public void setLenient(boolean lenient) {
+        m_lenient = lenient;
     }
 
-    private static void uc(Collection<?> collection, String message) {
-        if (collection.isEmpty()) return;
-        throw new UnsupportedOperationException(message);
+    public boolean isLenient() {
+        return m_lenient;
+    }
+
+    /**
+     * @return what a lenient builder couldn't convert as it is, in the order it was read. Always
+     *         empty for a strict one.
+     */
+    public List<ConversionIssue> getIssues() {
+        return m_issues;
+    }
+
+    /**
+     * Say where the elements parsed next are in the score, for issues. Optional, without it
+     * issues count the measures from 1.
+     */
+    public void beginMeasure(String partId, String measureNumber) {
+        if (!Objects.equals(partId, m_partId)) {
+            m_partStartMeasure = m_currentMeasureId;
+        }
+        m_partId = partId;
+        m_measureNumber = measureNumber;
+    }
+
+    /**
+     * Something read can't be converted. Strictly that fails the conversion with {@code error}.
+     * Leniently it's reported, and the caller goes on as {@code action} says.
+     *
+     * @param staff of the note it's on, 0 if it isn't on a note.
+     */
+    private void unsupported(RuntimeException error, int staff, String element, Action action,
+            String detail)
+    {
+        if (!m_lenient) {
+            throw error;
+        }
+        String measure = m_measureNumber != null
+                ? m_measureNumber
+                : Integer.toString(m_currentMeasureId + 1);
+        ConversionIssue issue = new ConversionIssue(m_partId, measure, staff, element, action,
+                detail);
+        if (Diagnostics.isEnabled(BUILD, DEBUG)) {
+            Diagnostics.log(BUILD, DEBUG, "Lenient: " + issue);
+        }
+        m_issues.add(issue);
+    }
+
+    /**
+     * @return true if notes of this MusicXML type, like "eighth", can be converted.
+     */
+    static boolean isSupportedNoteType(String mxlId) {
+        for (_NoteType noteType : NOTE_TYPES) {
+            if (noteType.m_mxlId.equals(mxlId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if this MusicXML accidental, like "sharp", can be converted.
+     */
+    static boolean isSupportedAccidental(String mxlId) {
+        for (_Accidental accidental : ACCIDENTALS) {
+            if (accidental.m_mxlId.equals(mxlId)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void nextMeasure() {
         m_currentMeasureId++;
-        m_measures.add(m_currentMeasure);
-        m_currentMeasure = new _Measure();
-        System.out.println("Measure " + m_currentMeasureId);
+        m_track1.endMeasure();
+        m_track2.endMeasure();
+        if (Diagnostics.isEnabled(BUILD, DEBUG)) {
+            Diagnostics.log(BUILD, DEBUG, "Measure " + m_currentMeasureId);
+        }
     }
 
     public void parseAttributes(Attributes attributes) {
@@ -270,55 +807,78 @@ public class GjmBuilder {
         // attributes.getDivisions();
         // attributes.getStaves();
 
-        List<Key> keyList = attributes.getKey();
-        if (keyList != null && keyList.size() > 0) {
-            p(attributes.getKey().get(0));
-        }
+        AttributesEvent event = new AttributesEvent();
 
+        List<Key> keyList = attributes.getKey();
         if (keyList != null && !keyList.isEmpty()) {
-            if (m_key >= 0 || keyList.size() > 1) {
-                for (Key key : keyList) {
-                    p(key);
-                }
-                System.out.println("WARNING: Multiple key mapping not supported yet.");
+            for (Key key : keyList) {
+                Diagnostics.dump(PARSE, DEBUG, key);
+            }
+            event.m_keyCount = keyList.size();
+            if (keyList.get(0).getFifths() == null) {
+                event.m_isKeyNonTraditional = true;
+            } else {
+                event.m_fifths = keyList.get(0).getFifths().intValue();
             }
-            m_key = keyList.get(0).getFifths().intValue();
         }
 
         List<Time> timeList = attributes.getTime();
-        if (timeList.size() > 0) {
-            p(attributes.getTime().get(0));
-        }
         if (timeList != null && !timeList.isEmpty()) {
-            if (m_beatsPerMeasure >= 0 || timeList.size() > 1) {
-                throw new UnsupportedOperationException(
-                        "Multiple beats / measure not supported yet.");
+            Diagnostics.dump(PARSE, DEBUG, timeList.get(0));
+            Time time = timeList.get(0);
+            event.m_timeCount = timeList.size();
+            List<JAXBElement<String>> signature = time.getTimeSignature();
+            try {
+                event.m_beats = Integer.parseInt(signature.get(0).getValue().strip());
+                event.m_beatType = Integer.parseInt(signature.get(1).getValue().strip());
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                // Senza misura, or beats like 3+2
+                event.m_isTimeUnmeasured = true;
             }
+        }
 
-            Time time = timeList.get(0);
-            m_beatsPerMeasure = Integer.parseInt(
-                    time.getTimeSignature().get(0).getValue());
-            int beatValue = Integer.parseInt(
-                    time.getTimeSignature().get(1).getValue());
-            if (beatValue != 4) {
-                throw new UnsupportedOperationException("Only x/4 time signatures supported.");
+        List<Clef> clefs = attributes.getClef();
+        if (clefs != null && !clefs.isEmpty()) {
+            event.m_clefCount = clefs.size();
+            event.m_clefSign1 = clefs.get(0).getSign().value();
+            if (clefs.size() > 1) {
+                event.m_clefSign2 = clefs.get(1).getSign().value();
+            }
+        }
+
+        parseAttributes(event);
+    }
+
+    public void parseAttributes(AttributesEvent attributes) {
+        if (attributes.m_keyCount > 0) {
+            if (attributes.m_isKeyNonTraditional) {
+                unsupported(new UnsupportedOperationException("Non-traditional keys not supported"),
+                        0, "key", Action.IGNORED, "without fifths left out");
+            } else {
+                if (m_key >= 0 || attributes.m_keyCount > 1) {
+                    warn("WARNING: Multiple key mapping not supported yet.");
+                }
+                m_key = attributes.m_fifths;
             }
         }
 
+        if (attributes.m_timeCount > 0) {
+            parseTime(attributes);
+        }
+
         // Clefts... This is associated and mapped to the number of staves.
-        List<Clef> clefs = attributes.getClef();
-        if (clefs == null || clefs.isEmpty()) {
+        if (attributes.m_clefCount == 0) {
             m_clef1 = _Clef.L2G;
             m_clef2 = _Clef.L4F;
         } else {
-            if (clefs.get(0).getSign().value().equals("G")) {
+            if ("G".equals(attributes.m_clefSign1)) {
                 m_clef1 = _Clef.L2G;
             } else {
                 m_clef1 = _Clef.L4F;
             }
-            if (clefs.size() < 2) {
+            if (attributes.m_clefCount < 2) {
                 m_clef2 = _Clef.L4F;
-            } else if (clefs.get(1).getSign().value().equals("G")) {
+            } else if ("G".equals(attributes.m_clefSign2)) {
                 m_clef2 = _Clef.L2G;
             } else {
                 m_clef2 = _Clef.L4F;
@@ -326,62 +886,128 @@ public class GjmBuilder {
         }
     }
 
+    private void parseTime(AttributesEvent attributes) {
+        if (attributes.m_isTimeUnmeasured) {
+            unsupported(new UnsupportedOperationException("Only x/4 time signatures supported."),
+                    0, "time", Action.IGNORED, "without beats left out");
+            return;
+        }
+        if (m_beatsPerMeasure >= 0 || attributes.m_timeCount > 1) {
+            UnsupportedOperationException error = new UnsupportedOperationException(
+                    "Multiple beats / measure not supported yet.");
+            if (m_beatsPerMeasure >= 0) {
+                unsupported(error, 0, "time", Action.IGNORED, "change left out");
+                return;
+            }
+            unsupported(error, 0, "time", Action.IGNORED, "after the first left out");
+        }
+
+        m_beatsPerMeasure = attributes.m_beats;
+        if (attributes.m_beatType != 4) {
+            // Same length of measure in quarters, 6/8 is 3/4.
+            int quarters = attributes.m_beatType > 0
+                    ? Math.max(1, Math.round(attributes.m_beats * 4f / attributes.m_beatType))
+                    : attributes.m_beats;
+            unsupported(new UnsupportedOperationException("Only x/4 time signatures supported."),
+                    0, "time", Action.APPROXIMATED, attributes.m_beats + "/"
+                            + attributes.m_beatType + " written as " + quarters + "/4");
+            m_beatsPerMeasure = quarters;
+        }
+    }
+
     public void parseDirection(Direction direction) {
-        p(direction);
-        p(direction.getSound());
+        // Nothing is used from directions yet, they're only dumped.
+        if (!Diagnostics.isEnabled(PARSE, DEBUG)) {
+            return;
+        }
+        Diagnostics.dump(PARSE, DEBUG, direction);
+        Diagnostics.dump(PARSE, DEBUG, direction.getSound());
         for (DirectionType directionType : direction.getDirectionType()) {
-            p(directionType);
-            p(directionType.getMetronome());
+            Diagnostics.dump(PARSE, DEBUG, directionType);
+            Diagnostics.dump(PARSE, DEBUG, directionType.getMetronome());
             if (directionType.getMetronome() != null) {
-                p(directionType.getMetronome().getPerMinute());
+                Diagnostics.dump(PARSE, DEBUG, directionType.getMetronome().getPerMinute());
             }
             for (Dynamics dynamics : directionType.getDynamics()) {
-                p(dynamics);
+                Diagnostics.dump(PARSE, DEBUG, dynamics);
                 for (JAXBElement<?> element : dynamics.getPOrPpOrPpp()) {
-                    System.out.println("POrPpOrPpp: " + element.getName());
+                    Diagnostics.log(PARSE, DEBUG, "POrPpOrPpp: " + element.getName());
                 }
             }
         }
     }
 
     public void parseBackup(Backup backup) {
-        p(backup);
+        Diagnostics.dump(PARSE, DEBUG, backup);
     }
 
     public void parseForward(Forward forward) {
-        uo(forward, "Forward?");
+        if (!m_lenient) {
+            Diagnostics.dump(PARSE, ERROR, forward);
+        }
+        parseForward();
+    }
+
+    /**
+     * A {@code <forward>}, moving on in time without a note. There's no time to move on in GJM.
+     */
+    public void parseForward() {
+        unsupported(new UnsupportedOperationException("Forward?"), 0, "forward", Action.IGNORED,
+                "left out, the notes after it come early");
     }
 
     public void parseBarline(Barline barline) {
-        p(barline);
-        p(barline.getRepeat());
+        Diagnostics.dump(PARSE, DEBUG, barline);
+        Diagnostics.dump(PARSE, DEBUG, barline.getRepeat());
 
+        BarlineEvent event = new BarlineEvent();
         Repeat repeat = barline.getRepeat();
-        if (repeat == null) {
+        if (repeat != null) {
+            event.m_hasRepeat = true;
+            event.m_repeatForward = repeat.getDirection() == BackwardForward.FORWARD;
+            if (repeat.getTimes() != null) {
+                event.m_repeatTimes = repeat.getTimes().intValue();
+            }
+        }
+
+        parseBarline(event);
+    }
+
+    public void parseBarline(BarlineEvent barline) {
+        if (!barline.m_hasRepeat) {
             return;
         }
 
-        BackwardForward direction = repeat.getDirection();
         boolean isEnd = false;
-        if (direction == BackwardForward.FORWARD) {
+        if (barline.m_repeatForward) {
             // This is a start of a repeat
             if (m_currentRepeat != null) {
-                throw new IllegalStateException("Nested repeats not supported");
+                unsupported(new IllegalStateException("Nested repeats not supported"), 0,
+                        "repeat", Action.IGNORED, "start inside another repeat left out");
+                return;
             }
             m_currentRepeat = new _Repeat();
             m_currentRepeat.m_startMeasure = m_currentMeasureId;
-        } else if (direction == BackwardForward.BACKWARD) {
+        } else {
             isEnd = true;
             // This is the end of a repeat
             if (m_currentRepeat == null) {
-                throw new IllegalStateException("Can't repeat without a starting repeat bar");
+                unsupported(new IllegalStateException("Can't repeat without a starting repeat bar"),
+                        0, "repeat", Action.APPROXIMATED,
+                        "end without a start repeats from the last repeat, or the part's start");
+                m_currentRepeat = new _Repeat();
+                m_currentRepeat.m_startMeasure = m_partStartMeasure;
+                if (!m_repeats.isEmpty()) {
+                    int afterLast = m_repeats.get(m_repeats.size() - 1).m_endMeasure + 1;
+                    m_currentRepeat.m_startMeasure = Math.max(m_partStartMeasure,
+                            Math.min(afterLast, m_currentMeasureId));
+                }
             }
             m_currentRepeat.m_endMeasure = m_currentMeasureId;
         }
 
-        BigInteger times = repeat.getTimes();
-        if (repeat.getTimes() != null) {
-            m_currentRepeat.times = times.intValue();
+        if (barline.m_repeatTimes >= 0) {
+            m_currentRepeat.times = barline.m_repeatTimes;
         }
 
         if (isEnd) {
@@ -391,33 +1017,35 @@ public class GjmBuilder {
     }
 
     public void parseNote(Note note) {
+        NoteEvent event = new NoteEvent();
+
         // Note: Duration type of "quarter notes" don't have a DurationType entry
-        uo(note.getGrace(), "note grace");
-        uo(note.getCue(), "note cue");
-        uo(note.getUnpitched(), "note unpitch");
-        uo(note.getInstrument(), "note instrument");
-        uo(note.getFootnote(), "note footnote");
-        uo(note.getLevel(), "note level");
-        uo(note.getTimeModification(), "note timeModification");
-        uo(note.getNotehead(), "note notehead");
-        uo(note.getNoteheadText(), "note noteheadText");
-        uo(note.getPlay(), "note play");
-        uo(note.getDynamics(), "note dynamics");
-        uo(note.getEndDynamics(), "note endDynamics");
-        uo(note.getAttack(), "note attack");
-        uo(note.getRelease(), "note release");
-        uo(note.getTimeOnly(), "note timeOnly");
-        uo(note.getPizzicato(), "note pizzicato");
-        uo(note.getFontFamily(), "note fontFamily");
-        uo(note.getFontStyle(), "note fontStyle");
-        uo(note.getFontSize(), "note fontSize");
-        uo(note.getFontWeight(), "note fontWeight");
-        uo(note.getColor(), "note color");
-        uo(note.getRelativeX(), "note relativeX");
-        uo(note.getRelativeY(), "note relativeY");
-        uo(note.getPrintDot(), "note printDot");
-        uo(note.getPrintLyric(), "note printLyric");
-        uo(note.getPrintSpacing(), "note printSpacing");
+        markIf(event, note.getGrace(), Unsupported.GRACE);
+        markIf(event, note.getCue(), Unsupported.CUE);
+        markIf(event, note.getUnpitched(), Unsupported.UNPITCHED);
+        markIf(event, note.getInstrument(), Unsupported.INSTRUMENT);
+        markIf(event, note.getFootnote(), Unsupported.FOOTNOTE);
+        markIf(event, note.getLevel(), Unsupported.LEVEL);
+        markIf(event, note.getTimeModification(), Unsupported.TIME_MODIFICATION);
+        markIf(event, note.getNotehead(), Unsupported.NOTEHEAD);
+        markIf(event, note.getNoteheadText(), Unsupported.NOTEHEAD_TEXT);
+        markIf(event, note.getPlay(), Unsupported.PLAY);
+        markIf(event, note.getDynamics(), Unsupported.DYNAMICS);
+        markIf(event, note.getEndDynamics(), Unsupported.END_DYNAMICS);
+        markIf(event, note.getAttack(), Unsupported.ATTACK);
+        markIf(event, note.getRelease(), Unsupported.RELEASE);
+        markIf(event, note.getTimeOnly(), Unsupported.TIME_ONLY);
+        markIf(event, note.getPizzicato(), Unsupported.PIZZICATO);
+        markIf(event, note.getFontFamily(), Unsupported.FONT_FAMILY);
+        markIf(event, note.getFontStyle(), Unsupported.FONT_STYLE);
+        markIf(event, note.getFontSize(), Unsupported.FONT_SIZE);
+        markIf(event, note.getFontWeight(), Unsupported.FONT_WEIGHT);
+        markIf(event, note.getColor(), Unsupported.COLOR);
+        markIf(event, note.getRelativeX(), Unsupported.RELATIVE_X);
+        markIf(event, note.getRelativeY(), Unsupported.RELATIVE_Y);
+        markIf(event, note.getPrintDot(), Unsupported.PRINT_DOT);
+        markIf(event, note.getPrintLyric(), Unsupported.PRINT_LYRIC);
+        markIf(event, note.getPrintSpacing(), Unsupported.PRINT_SPACING);
 
         for (Notations notations : note.getNotations()) {
             for (Object object : notations.getTiedOrSlurOrTuplet()) {
@@ -428,8 +1056,10 @@ public class GjmBuilder {
                         && !(object instanceof Slide)
                         && !(object instanceof Fermata))
                 {
-                    p(object);
-                    throw new UnsupportedOperationException("Unknown notation type.");
+                    if (event.m_notation == null) {
+                        event.m_notation = xmlName(object.getClass());
+                    }
+                    event.mark(Unsupported.NOTATION);
                 }
 
                 if (object instanceof Articulations) {
@@ -439,12 +1069,15 @@ public class GjmBuilder {
                         if (!eleName.equals("staccato")
                                 && !eleName.equals("accent"))
                         {
-                            throw new UnsupportedOperationException(
-                                    "Only staccato articulation supported: "
-                                            + jele.getName().toString());
+                            if (event.m_articulation == null) {
+                                event.m_articulation = eleName;
+                            }
+                            event.mark(Unsupported.ARTICULATION);
+                        }
+                        if (Diagnostics.isEnabled(PARSE, DEBUG)) {
+                            Diagnostics.log(PARSE, DEBUG, jele.getName().toString());
+                            Diagnostics.dump(PARSE, DEBUG, jele.getValue());
                         }
-                        System.out.println(jele.getName().toString());
-                        p(jele.getValue());
                     }
                 }
             }
@@ -452,157 +1085,84 @@ public class GjmBuilder {
 
         if (note.getType() != null) {
             NoteType noteType = note.getType();
-            uo(noteType.getSize(), "noteType Size");
+            markIf(event, noteType.getSize(), Unsupported.TYPE_SIZE);
         }
 
         if (note.getRest() != null) {
             Rest rest = note.getRest();
-            p(rest);
-            uo(rest.getMeasure(), "rest measure");
+            Diagnostics.dump(PARSE, DEBUG, rest);
+            markIf(event, rest.getMeasure(), Unsupported.REST_MEASURE);
         }
 
         for (Tie tie : note.getTie()) {
-            uo(tie.getTimeOnly(), "tie timeOnly");
+            markIf(event, tie.getTimeOnly(), Unsupported.TIE_TIME_ONLY);
         }
 
         if (note.getDot().size() > 1) {
-            throw new UnsupportedOperationException("Only one dot supported... for now");
+            event.mark(Unsupported.DOTS);
         }
         if (!note.getDot().isEmpty()) {
             EmptyPlacement dot = note.getDot().get(0);
-            if (dot.getPlacement() != null) {
-                throw new UnsupportedOperationException("Dot placement not supported");
-            }
+            markIf(event, dot.getPlacement(), Unsupported.DOT_PLACEMENT);
         }
 
-        System.out.println("S-----------------------------------------------------------");
+        Diagnostics.log(PARSE, TRACE,
+                "S-----------------------------------------------------------");
 
-        int staff = note.getStaff().intValue();
-        if (staff > 2 || staff < 1) {
-            throw new UnsupportedOperationException("Only supports 2 staffs: " + staff);
+        if (note.getStaff() != null) {
+            event.m_staff = note.getStaff().intValue();
         }
-
-        _Note parsedNote = new _Note();
-        if (note.getType() == null) {
-            // If the note type isn't specified, assume it's a whole note
-            parsedNote.m_noteType = _NoteType.WHOLE;
-        } else {
-            parsedNote.m_noteType = _NoteType.fromMxl(note.getType().getValue());
-        }
-
-        // Check if it's staccato
-        boolean staccato = false;
-        for (Notations notations : note.getNotations()) {
-            for (Object object : notations.getTiedOrSlurOrTuplet()) {
-                if (object instanceof Articulations) {
-                    for (JAXBElement<?> jele
-                            : ((Articulations) object).getAccentOrStrongAccentOrStaccato())
-                    {
-                        if (jele.getName().toString().equals("staccato")) {
-                            staccato = true;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        if (note.getRest() != null) {
-            parsedNote.m_isRest = true;
-            staccato = false;
-        }
-
-        // To emulate staccato, we're going to set the note length to 1/32 (the fastest for GJM) and
-        // fill the remaining time with rest
-        List<_Note> staccatoRests = Collections.emptyList();
-        if (staccato) {
-            staccatoRests = staccato(parsedNote);
+        event.m_isChord = note.getChord() != null;
+        event.m_isRest = note.getRest() != null;
+        if (note.getType() != null) {
+            event.m_type = note.getType().getValue();
         }
 
         Pitch pitch = note.getPitch();
-        _Pitch parsedPitch = null;
         if (pitch != null) {
-            if (parsedNote.m_isRest) {
-                throw new IllegalStateException("Can't have a rest and pitch on same note.");
-            }
-
-            parsedPitch = new _Pitch();
-            parsedPitch.m_octave = pitch.getOctave()
-                    + (staff == 1 ? m_octaveOffset1 : m_octaveOffset2);
-            if (parsedPitch.m_octave == 0) {
-                System.out.println("Warning: Octave 0 not officially supported by SOLO");
-            }
-            parsedPitch.m_step = _Step.valueOf(pitch.getStep().toString());
-
+            event.m_hasPitch = true;
+            event.m_step = pitch.getStep().toString().charAt(0);
+            event.m_octave = pitch.getOctave();
             if (pitch.getAlter() != null) {
                 BigDecimal alter = pitch.getAlter();
                 if (alter.stripTrailingZeros().scale() > 0) {
-                    throw new UnsupportedOperationException("Microtones not supported");
+                    event.mark(Unsupported.MICROTONE);
                 }
-                parsedPitch.m_alterPitch = alter.intValue();
-            } else {
-                parsedPitch.m_alterPitch = 0;
+                event.m_alter = alter.setScale(0, RoundingMode.HALF_EVEN).intValue();
             }
-
             Accidental accidental = note.getAccidental();
             if (accidental != null) {
-                parsedPitch.m_accidental = _Accidental.fromMxl(accidental);
+                event.m_accidental = accidental.getValue().value();
             }
         }
 
-        if (!note.getDot().isEmpty()) {
-            parsedNote.m_isDotted = true;
-        }
+        event.m_isDotted = !note.getDot().isEmpty();
 
-        List<Tie> ties = note.getTie();
-        for (Tie tie : ties) {
+        for (Tie tie : note.getTie()) {
             if (tie.getType() == StartStop.START) {
-                parsedNote.m_tieStart = true;
+                event.m_tieStart = true;
             } else {
-                parsedNote.m_tieEnd = true;
+                event.m_tieEnd = true;
             }
         }
 
         for (Notations notations : note.getNotations()) {
             for (Object object : notations.getTiedOrSlurOrTuplet()) {
                 if (object instanceof Arpeggiate) {
-                    parsedNote.m_isArpeggiate = true;
-                    break;
+                    event.m_isArpeggiate = true;
+                } else if (object instanceof Articulations) {
+                    for (JAXBElement<?> jele
+                            : ((Articulations) object).getAccentOrStrongAccentOrStaccato())
+                    {
+                        if (jele.getName().toString().equals("staccato")) {
+                            event.m_isStaccato = true;
+                        }
+                    }
                 }
             }
         }
 
-        List<_Note> currentTrack = staff == 1
-                ? m_currentMeasure.m_notes1
-                : m_currentMeasure.m_notes2;
-
-        if (note.getChord() != null) {
-            if (parsedNote.m_isRest) {
-                throw new IllegalStateException("Can't chord a rest...");
-            }
-
-            _Note chordNote = null;
-            for (int i = currentTrack.size() - 1; i >= 0; --i) {
-                chordNote = currentTrack.get(i);
-                if (!chordNote.m_isRest) {
-                    break;
-                }
-            }
-            if (chordNote == null) {
-                throw new IllegalStateException("This shouldn't happen if you don't chord a rest.");
-            }
-            chordNote.m_pitches.add(parsedPitch);
-
-            // Also, connect any ties
-            chordNote.m_tieStart |= parsedNote.m_tieStart;
-            chordNote.m_tieEnd |= parsedNote.m_tieEnd;
-        } else {
-            if (parsedPitch != null) {
-                parsedNote.m_pitches.add(parsedPitch);
-            }
-            currentTrack.add(parsedNote);
-        }
-        currentTrack.addAll(staccatoRests);
+        parseNote(event);
 
         /*
          *
@@ -610,40 +1170,8 @@ public class GjmBuilder {
          *
          */
 
-        System.out.printf("Measure = %d, Staff = %s, Duration = %s",
-                m_currentMeasureId,
-                staff,
-                note.getDuration());
-
-        p(note.getType());
-
-        p(note.getRest());
-        p(note.getPitch());
-
-        if (!note.getDot().isEmpty()) {
-            System.out.println("--LONG DOT-- ");
-        }
-
-        // TODO: Parse sharp / flat / natural accidentals...
-        p(note.getAccidental());
-
-        for (Notations notations : note.getNotations()) {
-            for (Object object : notations.getTiedOrSlurOrTuplet()) {
-                if (object instanceof Arpeggiate) {
-                    p(object);
-                }
-            }
-        }
-
-        for (Tie tempTie : note.getTie()) {
-            p(tempTie);
-        }
-
-        /*
-         * If this is specified, it means it's on the same stem / time as the previous note.
-         */
-        if (note.getChord() != null) {
-            System.out.println("--CHORD--");
+        if (Diagnostics.isEnabled(PARSE, TRACE)) {
+            dumpNote(note, event);
         }
 
         /*
@@ -684,56 +1212,241 @@ public class GjmBuilder {
          *     .getDisplayStep()
          *     .getDisplayOctave()
          */
-        System.out.println("E-----------------------------------------------------------");
+        Diagnostics.log(PARSE, TRACE,
+                "E-----------------------------------------------------------");
     }
 
-    private static List<_Note> staccato(_Note originalNote) {
-        if (originalNote.m_noteType.m_durationMultiplier == 2) {
-            System.out.println("WARNING: Can't staccato a 32nd note.");
-            return Collections.emptyList();
+    private static void markIf(NoteEvent event, Object value, Unsupported unsupported) {
+        if (value != null) {
+            event.mark(unsupported);
         }
+    }
 
-        // Create our list of rests
-        List<_Note> result = new ArrayList<>();
-        for (int durationMultiplier = _NoteType.THIRTY_SECOND.m_durationMultiplier;
-             durationMultiplier < originalNote.m_noteType.m_durationMultiplier;
-             durationMultiplier *= 2)
-        {
-            _Note rest = new _Note();
-            rest.m_noteType = _NoteType.fromDurationMultiplier(durationMultiplier);
-            rest.m_isRest = true;
-            result.add(rest);
+    /**
+     * @return the MusicXML element a proxymusic class is for, like "non-arpeggiate" for
+     *         NonArpeggiate.
+     */
+    private static String xmlName(Class<?> type) {
+        String name = type.getSimpleName();
+        StringBuilder result = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                result.append('-');
+            }
+            result.append(Character.toLowerCase(c));
         }
+        return result.toString();
+    }
+
+    private void dumpNote(Note note, NoteEvent event) {
+        Diagnostics.logf(PARSE, TRACE, "Measure = %d, Staff = %s, Duration = %s",
+                m_currentMeasureId,
+                event.m_staff,
+                note.getDuration());
 
-        // Update the original note to be a 32nd note.
-        // Combined with the rest padding, the overall beat length is the same.
-        originalNote.m_noteType = _NoteType.THIRTY_SECOND;
+        Diagnostics.dump(PARSE, TRACE, note.getType());
 
-        return result;
+        Diagnostics.dump(PARSE, TRACE, note.getRest());
+        Diagnostics.dump(PARSE, TRACE, note.getPitch());
+
+        if (!note.getDot().isEmpty()) {
+            Diagnostics.log(PARSE, TRACE, "--LONG DOT-- ");
+        }
+
+        // TODO: Parse sharp / flat / natural accidentals...
+        Diagnostics.dump(PARSE, TRACE, note.getAccidental());
+
+        for (Notations notations : note.getNotations()) {
+            for (Object object : notations.getTiedOrSlurOrTuplet()) {
+                if (object instanceof Arpeggiate) {
+                    Diagnostics.dump(PARSE, TRACE, object);
+                }
+            }
+        }
+
+        for (Tie tempTie : note.getTie()) {
+            Diagnostics.dump(PARSE, TRACE, tempTie);
+        }
+
+        /*
+         * If this is specified, it means it's on the same stem / time as the previous note.
+         */
+        if (note.getChord() != null) {
+            Diagnostics.log(PARSE, TRACE, "--CHORD--");
+        }
+    }
+
+    /**
+     * Fail on what the note has that can't be converted or, leniently, report it and adjust the
+     * note to match.
+     *
+     * @return false if the note is left out.
+     */
+    private boolean checkUnsupported(NoteEvent note) {
+        for (Unsupported unsupported : UNSUPPORTED) {
+            if (!note.has(unsupported)) {
+                continue;
+            }
+            unsupported(new UnsupportedOperationException(unsupported.message(note)),
+                    note.m_staff, unsupported.element(note), unsupported.m_action,
+                    unsupported.m_detail);
+            if (unsupported.m_action == Action.DROPPED) {
+                return false;
+            }
+            if (unsupported == Unsupported.UNPITCHED) {
+                note.m_isRest = true;
+            }
+        }
+        return true;
+    }
+
+    public void parseNote(NoteEvent note) {
+        if (note.m_unsupported != 0 && !checkUnsupported(note)) {
+            return;
+        }
+
+        int staff = note.m_staff;
+        if (staff > 2 || staff < 1) {
+            int nearest = staff > 2 ? 2 : 1;
+            unsupported(new UnsupportedOperationException("Only supports 2 staffs: " + staff),
+                    staff, "staff", Action.APPROXIMATED, "played on staff " + nearest);
+            staff = nearest;
+        }
+
+        _NoteType noteType;
+        if (note.m_type == null) {
+            // If the note type isn't specified, assume it's a whole note
+            noteType = _NoteType.WHOLE;
+        } else {
+            noteType = _NoteType.fromMxl(note.m_type);
+            if (noteType == null) {
+                noteType = _NoteType.nearest(note.m_type);
+                unsupported(new UnsupportedOperationException(
+                                "Unsupported Note Duration: " + note.m_type),
+                        note.m_staff, "type", Action.APPROXIMATED,
+                        note.m_type + " played as " + noteType.m_mxlId);
+            }
+        }
+
+        boolean staccato = note.m_isStaccato;
+        if (note.m_isRest) {
+            staccato = false;
+        }
+
+        // To emulate staccato, we're going to set the note length to 1/32 (the fastest for GJM) and
+        // fill the remaining time with rest
+        _NoteType staccatoType = null;
+        if (staccato) {
+            if (noteType == _NoteType.THIRTY_SECOND) {
+                warn("WARNING: Can't staccato a 32nd note.");
+            } else {
+                staccatoType = noteType;
+                noteType = _NoteType.THIRTY_SECOND;
+            }
+        }
+
+        int pitch = 0;
+        if (note.m_hasPitch) {
+            if (note.m_isRest) {
+                throw new IllegalStateException("Can't have a rest and pitch on same note.");
+            }
+
+            _Accidental accidental = null;
+            if (note.m_accidental != null) {
+                accidental = _Accidental.fromMxl(note.m_accidental);
+                if (accidental == null) {
+                    unsupported(new IllegalArgumentException("Unsupported accidental"),
+                            note.m_staff, "accidental", Action.IGNORED,
+                            note.m_accidental + " left out");
+                }
+            }
+
+            // The octave offsets are applied when writing, so they can change without parsing again.
+            pitch = packPitch(note.m_octave, _Step.fromMxl(note.m_step), note.m_alter, accidental);
+        }
+
+        int flags = (note.m_isRest ? REST : 0)
+                | (note.m_isDotted ? DOTTED : 0)
+                | (note.m_tieStart ? TIE_START : 0)
+                | (note.m_tieEnd ? TIE_END : 0)
+                | (note.m_isArpeggiate ? ARPEGGIATE : 0);
+
+        _Track currentTrack = staff == 1 ? m_track1 : m_track2;
+
+        int chordNote = -1;
+        if (note.m_isChord) {
+            if (note.m_isRest) {
+                unsupported(new IllegalStateException("Can't chord a rest..."), note.m_staff,
+                        "chord", Action.DROPPED, "rest left out");
+                return;
+            }
+
+            int measureStart = currentTrack.measureStart(currentTrack.m_measureCount);
+            for (int i = currentTrack.m_noteCount - 1; i >= measureStart; --i) {
+                chordNote = i;
+                if (!currentTrack.is(i, REST)) {
+                    break;
+                }
+            }
+            if (chordNote < 0) {
+                unsupported(new IllegalStateException(
+                                "This shouldn't happen if you don't chord a rest."),
+                        note.m_staff, "chord", Action.APPROXIMATED,
+                        "without a note before it played as a note of its own");
+            }
+        }
+
+        if (chordNote >= 0) {
+            if (note.m_hasPitch) {
+                currentTrack.addPitch(chordNote, pitch);
+            }
+
+            // Also, connect any ties
+            currentTrack.m_flags[chordNote] |= flags & (TIE_START | TIE_END);
+        } else {
+            int parsedNote = currentTrack.addNote(noteType, flags);
+            if (note.m_hasPitch) {
+                currentTrack.addPitch(parsedNote, pitch);
+            }
+        }
+
+        if (staccatoType != null) {
+            for (int durationMultiplier = _NoteType.THIRTY_SECOND.m_durationMultiplier;
+                 durationMultiplier < staccatoType.m_durationMultiplier;
+                 durationMultiplier *= 2)
+            {
+                currentTrack.addNote(_NoteType.fromDurationMultiplier(durationMultiplier), REST);
+            }
+        }
     }
 
     private void applySwing() {
         // Only care about swinging track 1, for now
-        for (_Measure measure : m_measures) {
-            measure.m_notes1 = swingTrack(measure.m_notes1);
+        _Track source = m_track1;
+        _Track result = source.derive();
+        for (int measure = 0; measure < source.m_measureCount; ++measure) {
+            swingMeasure(source, measure, result);
+            result.endMeasure();
         }
+        m_track1 = result;
     }
 
-    private List<_Note> swingTrack(List<_Note> notes) {
-        List<_Note> result = new ArrayList<>();
+    private static void swingMeasure(_Track source, int measure, _Track result) {
+        int start = source.measureStart(measure);
+        int end = source.measureEnd(measure);
         int currentBeatTally = 0;
-        for (int i = 0; i < notes.size(); ++i) {
-            _Note lNote = notes.get(i);
-            result.add(lNote);
+        for (int i = start; i < end; ++i) {
+            int lNote = result.copyNote(source, i);
 
-            if (i + 1 == notes.size()) {
+            if (i + 1 == end) {
                 break;
             }
-            _Note rNote = notes.get(i + 1);
+            int rSource = i + 1;
 
             int beatTally = currentBeatTally;
-            int beatTallyChange = lNote.m_noteType.m_durationMultiplier / 2;
-            if (lNote.m_isDotted) {
+            int beatTallyChange = source.noteType(i).m_durationMultiplier / 2;
+            if (source.is(i, DOTTED)) {
                 beatTallyChange += beatTallyChange / 2;
             }
             currentBeatTally += beatTallyChange;
@@ -742,40 +1455,31 @@ public class GjmBuilder {
                 continue;
             }
 
-            if (lNote.m_isDotted || rNote.m_isDotted) {
+            if (source.is(i, DOTTED) || source.is(rSource, DOTTED)) {
                 continue;
             }
 
-            if (lNote.m_isRest || rNote.m_isRest) {
+            if (source.is(i, REST) || source.is(rSource, REST)) {
                 continue;
             }
 
-            boolean lIsEighth = lNote.m_noteType == _NoteType.EIGHTH;
-            boolean rIsEighth = rNote.m_noteType == _NoteType.EIGHTH;
+            boolean lIsEighth = source.noteType(i) == _NoteType.EIGHTH;
+            boolean rIsEighth = source.noteType(rSource) == _NoteType.EIGHTH;
             if (!lIsEighth || !rIsEighth) {
                 continue;
             }
 
             // We can swing these!
-            _Note l2Note = lNote.deepClone();
-
-            lNote.m_isSwing = true;
-            lNote.m_tieStart = true;
-            lNote.m_isTriplet = true;
-            lNote.m_swingIndexOverride = 5;
-            lNote.m_swingDurationMultiplier= 1.25d;
-            // Already added at top of method
-
-            l2Note.m_isSwing = true;
-            l2Note.m_tieEnd = true;
-            l2Note.m_swingIndexOverride = 5;
-            l2Note.m_swingDurationMultiplier= 0.625d;
-            result.add(l2Note);
-
-            rNote.m_isSwing = true;
-            rNote.m_swingIndexOverride = 6;
-            rNote.m_swingDurationMultiplier = 0.75d;
-            result.add(rNote);
+            result.m_swing[lNote] = SWING_LEAD;
+            result.m_flags[lNote] |= TIE_START | TRIPLET;
+            // Already added at top of loop
+
+            int l2Note = result.copyNote(source, i);
+            result.m_swing[l2Note] = SWING_LEAD_TIED;
+            result.m_flags[l2Note] |= TIE_END;
+
+            int rNote = result.copyNote(source, rSource);
+            result.m_swing[rNote] = SWING_TRAIL;
 
             // Make sure we skip rNote on the next iteration
             ++i;
@@ -783,55 +1487,102 @@ public class GjmBuilder {
             // And correct the beat tally, since we're skipping
             currentBeatTally += beatTallyChange;
         }
-
-        return result;
     }
 
-    private void applyRepeats() {
-        List<_Measure> result = new ArrayList<>();
+    /**
+     * Resolve the repeats into the order source measures are played in. Nothing is copied, a
+     * repeated measure is just listed again.
+     *
+     * @return indices into the tracks' measures, one per measure written.
+     */
+    private int[] buildMeasurePlan() {
+        int measureCount = m_track1.m_measureCount;
+        int planLength = measureCount;
+        for (_Repeat repeat : m_repeats) {
+            planLength += repeat.times * (repeat.m_endMeasure - repeat.m_startMeasure + 1);
+        }
+
+        int[] result = new int[planLength];
+        int planPosition = 0;
         int measurePosition = 0;
         for (_Repeat repeat : m_repeats) {
-            // Copy from measurePosition to the start of this section
+            // Play from measurePosition to the start of this section
             for (int i = measurePosition; i < repeat.m_startMeasure; ++i) {
-                result.add(m_measures.get(i).deepClone());
+                result[planPosition++] = i;
             }
 
-            // Copy in this repeat for the original run, then the second time.
-            // times = 1 means copy it in twice
-            // times = 2 means copy it thrice, etc
-            // copy times + 1
+            // Play this repeat for the original run, then the second time.
+            // times = 1 means play it twice
+            // times = 2 means play it thrice, etc
+            // play times + 1
             // Which is the same as starting the count from zero.
             for (int count = 0; count <= repeat.times; ++count) {
                 for (int i = repeat.m_startMeasure; i <= repeat.m_endMeasure; ++i) {
-                    result.add(m_measures.get(i).deepClone());
+                    result[planPosition++] = i;
                 }
             }
             measurePosition = repeat.m_endMeasure + 1;
         }
 
-        // Copy to the end of the song
-        for (int i = measurePosition; i < m_measures.size(); ++i) {
-            result.add(m_measures.get(i).deepClone());
+        // Play to the end of the song
+        for (int i = measurePosition; i < measureCount; ++i) {
+            result[planPosition++] = i;
         }
 
-        // Set this as our final song set.
-        m_measures = result;
+        return result;
     }
 
+    /**
+     * Swing and resolve the repeats. Only done once, later calls do nothing.
+     */
     public void postProcess() {
+        if (m_postProcessed) {
+            return;
+        }
+        m_postProcessed = true;
+        m_parsedTrack1 = m_track1;
+
         if (m_swingBeat) {
             applySwing();
         }
 
-        // Do this last, as it copies measures. Previous post-processing should be done before
-        // the measure copying
-        applyRepeats();
+        // Do this last. The plan shares measures between repeats, so anything that changes a
+        // measure has to be done before, on the source measures.
+        m_measurePlan = buildMeasurePlan();
     }
 
     public String writeGjm() {
+        StringBuilder result = new StringBuilder();
+        try {
+            writeGjm(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Can't happen, StringBuilder doesn't throw.
+        }
+        return result.toString();
+    }
+
+    /**
+     * Write the GJM document to {@code out} as it is generated, in chunks of a few KB. {@code out}
+     * is not flushed or closed.
+     */
+    public void writeGjm(Appendable out) throws IOException {
+        try {
+            writeGjm(new IndentingStringBuilder(out, "\t"));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeGjm(IndentingStringBuilder sb) {
+        m_writeWarnings.clear();
+        if (m_measurePlan == null) {
+            // Not post processed, write the measures as they were read.
+            m_measurePlan = new int[m_track1.m_measureCount];
+            Arrays.setAll(m_measurePlan, i -> i);
+        }
+
         // Header data
-        IndentingStringBuilder sb = new IndentingStringBuilder("\t")
-                .li("Version = '1.1.0.0'")
+        sb.li("Version = '1.1.0.0'")
                 .push("Notation = {")
                     .li("Version = '1.1.0.0',")
                     .li("NotationName = '%s',", m_notationName)
@@ -845,7 +1596,7 @@ public class GjmBuilder {
                     .push("MeasureBeatsPerMinuteMap = {")
                         .li("{ 0, %d },", m_bpm) // TODO: Support different BPM per measure. Also, figure out how to read this from MXL
                     .pop("},")
-                    .li("MeasureAlignedCount = %d,", m_measures.size())
+                    .li("MeasureAlignedCount = %d,", m_measurePlan.length)
                 .pop("}")
                 ;
 
@@ -858,8 +1609,7 @@ public class GjmBuilder {
 
         // End of measures
         sb.pop("}");
-
-        return sb.toString();
+        sb.flush();
     }
 
     private void writeTrack(IndentingStringBuilder sb, int trackIndex) {
@@ -871,7 +1621,7 @@ public class GjmBuilder {
         String trackVolume1 = m_trackVolume1 == 100 ? "1.00" : "0." + m_trackVolume1;
         String trackVolume2 = m_trackVolume2 == 100 ? "1.00" : "0." + m_trackVolume2;
 
-        sb.push("[" + trackIndex + "] = {")
+        sb.s("[").a(trackIndex).e("] = {").in()
                 .push("MeasureKeySignatureMap = {") // TODO: Support multiple keys
                     .li("{ 0, %d },", m_key)
                 .pop("},")
@@ -888,9 +1638,14 @@ public class GjmBuilder {
                     .li("{ 0, %s },", trackIndex == 0 ? trackVolume1 : trackVolume2)
                 .pop("},");
 
+        _Track track = trackIndex == 0 ? m_track1 : m_track2;
+        int octaveOffset = trackIndex == 0 ? m_octaveOffset1 : m_octaveOffset2;
+        boolean warnedOctaveZero = false;
+        int baseDuration = (int) Math.round(BASE_DURATION * (60 / (double) m_bpm));
+
         int i = 0;
-        for (_Measure measure : m_measures) {
-            sb.push("[" + i + "] = {");
+        for (int measure : m_measurePlan) {
+            sb.s("[").a(i).e("] = {").in();
             if (trackIndex == 2) {
                 // TODO: Support track 3
                 sb.li("NotePackCount = 0");
@@ -898,85 +1653,90 @@ public class GjmBuilder {
                 continue;
             }
 
-            List<_Note> notes = trackIndex == 0
-                    ? measure.m_notes1
-                    : measure.m_notes2;
+            int start = track.measureStart(measure);
+            int end = track.measureEnd(measure);
 
             sb.li("DurationStampMax = 63,") // TODO: Calculate this?
-                    .li("NotePackCount = %d,", notes.size());
+                    .s("NotePackCount = ").a(end - start).e(",");
 
-            int j = 0;
             int stampIndex = 0;
-            for (_Note note : notes) {
-                sb.push("[" + j + "] = {");
-
-                if (note.m_tieStart || note.m_tieEnd) {
-                    String tieValue;
-                    if (note.m_tieStart && note.m_tieEnd) {
-                        tieValue = "Both";
-                    } else if (note.m_tieStart) {
-                        tieValue = "Start";
-                    } else {
-                        tieValue = "End";
-                    }
-                    sb.li("TieType = '%s',", tieValue);
+            for (int note = start; note < end; ++note) {
+                sb.s("[").a(note - start).e("] = {").in();
+
+                boolean tieStart = track.is(note, TIE_START);
+                boolean tieEnd = track.is(note, TIE_END);
+                if (tieStart && tieEnd) {
+                    sb.li("TieType = 'Both',");
+                } else if (tieStart) {
+                    sb.li("TieType = 'Start',");
+                } else if (tieEnd) {
+                    sb.li("TieType = 'End',");
                 }
 
-                if (note.m_isTriplet) {
+                if (track.is(note, TRIPLET)) {
                     sb.li("Triplet = true,");
                 }
 
-                if (note.m_isRest) {
+                boolean isRest = track.is(note, REST);
+                if (isRest) {
                     sb.li("IsRest = true,");
                 }
 
-                if (note.m_isDotted) {
+                if (track.is(note, DOTTED)) {
                     sb.li("IsDotted = true,");
                 }
 
-                if (note.m_noteType.m_gjmId != null) {
-                    sb.li("DurationType = '%s',", note.m_noteType.m_gjmId);
+                _NoteType noteType = track.noteType(note);
+                if (noteType.m_gjmId != null) {
+                    sb.s("DurationType = '").a(noteType.m_gjmId).e("',");
                 }
 
-                if (note.m_isArpeggiate) {
+                boolean isArpeggiate = track.is(note, ARPEGGIATE);
+                if (isArpeggiate) {
                     sb.li("ArpeggioMode ='Upward',");
                 }
 
-                sb.li("StampIndex = %d,", stampIndex);
+                sb.s("StampIndex = ").a(stampIndex).e(",");
 
-                int duration = (int) Math.round(BASE_DURATION * (60 / (double) m_bpm))
-                        * note.m_noteType.m_durationMultiplier;
-                if (note.m_isSwing) {
-                    duration = (int) Math.round(duration * note.m_swingDurationMultiplier);
+                int swing = track.m_swing[note];
+                int duration = baseDuration * noteType.m_durationMultiplier;
+                if (swing != SWING_NONE) {
+                    duration = (int) Math.round(duration * SWING_DURATION_MULTIPLIER[swing]);
                 }
-                sb.li("PlayingDurationTimeMs = %d,", duration);
+                sb.s("PlayingDurationTimeMs = ").a(duration).e(",");
 
-                if (note.m_isRest) {
-                    sb.li("ClassicPitchSignCount = 0,");
-                } else {
-                    sb.li("ClassicPitchSignCount = %d,", note.m_pitches.size());
-                }
+                int pitchStart = track.m_pitchStarts[note];
+                int pitchCount = track.m_pitchCounts[note];
+                sb.s("ClassicPitchSignCount = ").a(isRest ? 0 : pitchCount).e(",");
                 sb.push("ClassicPitchSign = {");
-                int pitchCount = 0;
-                for (_Pitch pitch : note.m_pitches) {
-                    int noteIndex = (pitch.m_octave - 1) * 12 + GJM_PITCH_OFFSET
-                            + pitch.m_step.m_pitchOffset;
+                for (int p = 0; p < pitchCount; ++p) {
+                    int pitch = track.m_pitches[pitchStart + p];
+                    _Step step = pitchStep(pitch);
+                    _Accidental accidental = pitchAccidental(pitch);
+                    int octave = pitchOctave(pitch) + octaveOffset;
+                    if (octave == 0 && !warnedOctaveZero) {
+                        String warning = "Warning: Octave 0 not officially supported by SOLO";
+                        Diagnostics.log(BUILD, WARN, warning);
+                        m_writeWarnings.add(warning);
+                        warnedOctaveZero = true;
+                    }
+                    int noteIndex = (octave - 1) * 12 + GJM_PITCH_OFFSET + step.m_pitchOffset;
 
                     int offset = 0;
                     String alter = "NoControl";
 
-                    if (pitch.m_accidental == null) {
-                        if (m_key < 0 && pitch.m_step.m_flatScale <= Math.abs(m_key)) {
+                    if (accidental == null) {
+                        if (m_key < 0 && step.m_flatScale <= Math.abs(m_key)) {
                             offset--;
-                        } else if (m_key > 0 && pitch.m_step.m_sharpScale <= m_key) {
+                        } else if (m_key > 0 && step.m_sharpScale <= m_key) {
                             offset++;
                         }
                     } else {
-                        switch (pitch.m_accidental) {
+                        switch (accidental) {
                         case FLAT -> offset--;
                         case SHARP -> offset++;
                         }
-                        alter = pitch.m_accidental.m_gjmString;
+                        alter = accidental.m_gjmString;
                     }
 
                     int pitchIndex = noteIndex + offset;
@@ -984,38 +1744,30 @@ public class GjmBuilder {
 //                    sb.li("noteIndex = " + noteIndex
 //                            + " offset = " + offset
 //                            + " pitchIndex = " + pitchIndex
-//                            + " alter = " + pitch.m_alterPitch);
-
-                    sb.li("[%d] = { "
-                            + "NumberedSign = %d, "
-                            + "PlayingPitchIndex = %d, "
-                            + "AlterantType = '%s', "
-                            + "RawAlterantType = '%s', "
-                            + "Volume = %s, "
-                            + "%s },",
-                            // TODO: This volumes is mapped / calculated somehow...
-                            noteIndex,
-                            pitch.m_step.m_sign,
-                            pitchIndex,
-                            alter,
-                            alter,
-                            (note.m_tieEnd ? "0.00" : "0.50"),
-                            (note.m_isArpeggiate && pitchCount > 0
-                                    ? String.valueOf(pitchCount * 100)
-                                    : "" ));
-
-                    pitchCount++;
+//                            + " alter = " + pitchAlter(pitch));
+
+                    // TODO: This volumes is mapped / calculated somehow...
+                    sb.s("[").a(noteIndex)
+                            .a("] = { NumberedSign = ").a(step.m_sign)
+                            .a(", PlayingPitchIndex = ").a(pitchIndex)
+                            .a(", AlterantType = '").a(alter)
+                            .a("', RawAlterantType = '").a(alter)
+                            .a("', Volume = ").a(tieEnd ? "0.00" : "0.50")
+                            .a(", ");
+                    if (isArpeggiate && p > 0) {
+                        sb.a(p * 100);
+                    }
+                    sb.e(" },");
                 }
                 sb.pop("},");
 
 
                 sb.pop("},");
-                if (note.m_isSwing) {
-                    stampIndex += note.m_swingIndexOverride;
+                if (swing != SWING_NONE) {
+                    stampIndex += SWING_STAMP_INDEX[swing];
                 } else {
-                    stampIndex += note.m_noteType.m_durationMultiplier;
+                    stampIndex += noteType.m_durationMultiplier;
                 }
-                j++;
             }
 
             sb.pop("},");
@@ -1,14 +1,44 @@
 package ca.kieve.sologjm;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Writes indented lines into an internal buffer, flushed to the output when full. Apart from the
+ * {@link #li(String, Object...) formatted lines}, nothing here allocates, so it is safe to use per
+ * note: build the line with {@link #s(String)}, the typed {@code a(...)} overloads and
+ * {@link #e(String)} instead of formatting it.
+ */
 public class IndentingStringBuilder {
-    private final StringBuilder m_stringBuilder;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Appendable m_out;
     private final String m_indent;
     private int m_level;
 
+    // Indent prefixes by level, grown as needed
+    private String[] m_indents;
+
+    private final char[] m_buffer;
+    private int m_bufferLength;
+
     public IndentingStringBuilder(String indent) {
-        m_stringBuilder = new StringBuilder();
+        this(new StringBuilder(), indent);
+    }
+
+    /**
+     * Write to the given output instead of building a string. Call {@link #flush()} when done. IO
+     * errors from it are thrown as {@link UncheckedIOException}.
+     */
+    public IndentingStringBuilder(Appendable out, String indent) {
+        m_out = out;
         m_indent = indent;
         m_level = 0;
+        m_indents = new String[] { "" };
+        m_buffer = new char[BUFFER_SIZE];
+        m_bufferLength = 0;
     }
 
     public IndentingStringBuilder push(String s) {
@@ -23,44 +53,136 @@ public class IndentingStringBuilder {
         return this;
     }
 
-    public IndentingStringBuilder li(String s, Object... args) {
-        m_stringBuilder.append(m_indent.repeat(m_level))
-                .append(String.format(s, args))
-                .append("\n");
+    /**
+     * Indent the lines after this one more, like {@link #push(String)} for lines built piecewise.
+     */
+    public IndentingStringBuilder in() {
+        m_level++;
         return this;
     }
 
-    public IndentingStringBuilder li(String s) {
-        m_stringBuilder.append(m_indent.repeat(m_level))
-                .append(s)
-                .append("\n");
+    /**
+     * Indent the next lines less, like {@link #pop(String)} for lines built piecewise.
+     */
+    public IndentingStringBuilder out() {
+        m_level--;
         return this;
     }
 
+    public IndentingStringBuilder li(String s, Object... args) {
+        return li(String.format(s, args));
+    }
+
+    public IndentingStringBuilder li(String s) {
+        return s(s).e();
+    }
+
+    /**
+     * Start a line.
+     */
     public IndentingStringBuilder s(String s) {
-        m_stringBuilder.append(m_indent.repeat(m_level))
-                .append(s);
-        return this;
+        return a(indent()).a(s);
     }
 
     public IndentingStringBuilder a(String s) {
-        m_stringBuilder.append(s);
+        int length = s.length();
+        int offset = 0;
+        while (offset < length) {
+            if (m_bufferLength == m_buffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(length - offset, m_buffer.length - m_bufferLength);
+            s.getChars(offset, offset + count, m_buffer, m_bufferLength);
+            m_bufferLength += count;
+            offset += count;
+        }
+        return this;
+    }
+
+    public IndentingStringBuilder a(char c) {
+        if (m_bufferLength == m_buffer.length) {
+            flushBuffer();
+        }
+        m_buffer[m_bufferLength++] = c;
         return this;
     }
 
     public IndentingStringBuilder a(int i) {
-        m_stringBuilder.append(i);
+        if (m_buffer.length - m_bufferLength < 11) { // "-2147483648"
+            flushBuffer();
+        }
+        if (i == Integer.MIN_VALUE) {
+            return a("-2147483648");
+        }
+        if (i < 0) {
+            m_buffer[m_bufferLength++] = '-';
+            i = -i;
+        }
+
+        int digits = 1;
+        for (int rest = i / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int index = m_bufferLength + digits;
+        m_bufferLength = index;
+        do {
+            m_buffer[--index] = (char) ('0' + i % 10);
+            i /= 10;
+        } while (i != 0);
         return this;
     }
 
+    /**
+     * End a line.
+     */
     public IndentingStringBuilder e(String s) {
-        m_stringBuilder.append(s)
-                .append("\n");
+        return a(s).e();
+    }
+
+    public IndentingStringBuilder e() {
+        return a('\n');
+    }
+
+    /**
+     * Write everything buffered so far to the output.
+     */
+    public IndentingStringBuilder flush() {
+        flushBuffer();
         return this;
     }
 
+    private String indent() {
+        if (m_level >= m_indents.length) {
+            String[] indents = new String[Math.max(m_level + 1, m_indents.length * 2)];
+            for (int i = 0; i < indents.length; ++i) {
+                indents[i] = i < m_indents.length ? m_indents[i] : m_indent.repeat(i);
+            }
+            m_indents = indents;
+        }
+        return m_indents[m_level];
+    }
+
+    private void flushBuffer() {
+        if (m_bufferLength == 0) {
+            return;
+        }
+        try {
+            if (m_out instanceof Writer) {
+                ((Writer) m_out).write(m_buffer, 0, m_bufferLength);
+            } else if (m_out instanceof StringBuilder) {
+                ((StringBuilder) m_out).append(m_buffer, 0, m_bufferLength);
+            } else {
+                m_out.append(CharBuffer.wrap(m_buffer, 0, m_bufferLength));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        m_bufferLength = 0;
+    }
+
     @Override
     public String toString() {
-        return m_stringBuilder.toString();
+        flushBuffer();
+        return m_out.toString();
     }
 }
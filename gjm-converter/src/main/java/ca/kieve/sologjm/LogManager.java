@@ -1,61 +1,233 @@
 package ca.kieve.sologjm;
 
+import ca.kieve.sologjm.debug.Diagnostics;
+
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
 
+/**
+ * Keeps the last {@link #CAPACITY} messages in a ring buffer. Adding a message never blocks, and
+ * listeners are called in order on a dedicated dispatcher thread rather than on the caller's.
+ */
 public class LogManager {
     public interface Listener {
+        /**
+         * Called on the log dispatcher thread, one message at a time.
+         */
         void onMessageAdded(String message);
     }
 
-    private static LogManager m_instance;
+    public static final int CAPACITY = 10_000;
+
+    private static class _Holder {
+        private static final LogManager INSTANCE = new LogManager();
+    }
 
     public static LogManager getInstance() {
-        if (m_instance == null) {
-            init();
+        return _Holder.INSTANCE;
+    }
+
+    private static final class _Entry {
+        private final long m_sequence;
+        private final String m_message;
+
+        private _Entry(long sequence, String message) {
+            m_sequence = sequence;
+            m_message = message;
         }
-        return m_instance;
     }
 
-    private static synchronized void init() {
-        if (m_instance == null) {
-            m_instance = new LogManager();
+    private static final class _Registration {
+        private static final long UNDECIDED = -1;
+
+        private final Listener m_listener;
+        // Decided by whichever of addListener() and the dispatcher gets to it first.
+        private final AtomicLong m_firstSequence;
+
+        private _Registration(Listener listener) {
+            m_listener = listener;
+            m_firstSequence = new AtomicLong(UNDECIDED);
+        }
+
+        /**
+         * @return the first sequence the listener gets, {@code sequence} if not decided yet.
+         */
+        private long firstSequence(long sequence) {
+            m_firstSequence.compareAndSet(UNDECIDED, sequence);
+            return m_firstSequence.get();
         }
     }
 
-    private final Set<Listener> m_listeners;
-    private final List<String> m_messages;
+    private final List<_Registration> m_listeners;
+
+    // m_nextSequence is claimed before the entry is stored, so a slot can briefly lag behind it.
+    private final AtomicReferenceArray<_Entry> m_messages;
+    private final AtomicLong m_nextSequence;
+
+    private final Thread m_dispatcher;
+    private final AtomicBoolean m_dispatcherParked;
 
     private LogManager() {
-        m_listeners = new HashSet<>();
-        m_messages = new ArrayList<>(50);
+        m_listeners = new CopyOnWriteArrayList<>();
+        m_messages = new AtomicReferenceArray<>(CAPACITY);
+        m_nextSequence = new AtomicLong();
+
+        m_dispatcherParked = new AtomicBoolean(false);
+        m_dispatcher = new Thread(this::dispatch, "log-dispatcher");
+        m_dispatcher.setDaemon(true);
+        m_dispatcher.start();
     }
 
-    public synchronized void addMessage(String message, Throwable throwable) {
-        addMessage(message);
+    public void addMessage(String message, Throwable throwable) {
         StringWriter stringWriter = new StringWriter();
         PrintWriter printWriter = new PrintWriter(stringWriter);
         throwable.printStackTrace(printWriter);
-        addMessage(stringWriter.toString());
+        addMessage(message + "\n" + stringWriter);
     }
 
-    public synchronized void addMessage(String message) {
-        m_messages.add(message);
-        for (Listener listener : m_listeners) {
-            listener.onMessageAdded(message);
+    public void addMessage(String message) {
+        long sequence = m_nextSequence.getAndIncrement();
+        int slot = slot(sequence);
+        _Entry entry = new _Entry(sequence, message);
+        while (true) {
+            _Entry current = m_messages.get(slot);
+            if (current != null && current.m_sequence > sequence) {
+                // Stalled long enough for the slot to be reused, the newer message stays.
+                break;
+            }
+            if (m_messages.compareAndSet(slot, current, entry)) {
+                break;
+            }
         }
+
+        if (m_dispatcherParked.get()) {
+            LockSupport.unpark(m_dispatcher);
+        }
+    }
+
+    /**
+     * The listener is called with every message from some point on, and the ones before are
+     * returned instead. Together they're each message once.
+     *
+     * @return the messages still in the buffer that the listener won't be called with, oldest
+     *         first.
+     */
+    public List<String> addListener(Listener listener) {
+        _Registration registration = new _Registration(listener);
+        m_listeners.add(registration);
+        return getMessages(registration.firstSequence(m_nextSequence.get()));
     }
 
-    public synchronized void addListener(Listener listener) {
-        m_listeners.add(listener);
+    public void removeListener(Listener listener) {
+        m_listeners.removeIf(registration -> registration.m_listener == listener);
     }
 
+    /**
+     * @return a copy of the messages still in the buffer, oldest first.
+     */
     public List<String> getMessages() {
-        return Collections.unmodifiableList(m_messages);
+        return getMessages(m_nextSequence.get());
+    }
+
+    private List<String> getMessages(long end) {
+        long start = Math.max(0, end - CAPACITY);
+        List<String> result = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; ++sequence) {
+            _Entry entry = m_messages.get(slot(sequence));
+            while (entry == null || entry.m_sequence < sequence) {
+                // Claimed but not stored yet, it won't be long.
+                Thread.onSpinWait();
+                entry = m_messages.get(slot(sequence));
+            }
+            // Skip ones already overwritten
+            if (entry.m_sequence == sequence) {
+                result.add(entry.m_message);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static int slot(long sequence) {
+        return (int) (sequence % CAPACITY);
+    }
+
+    private void dispatch() {
+        long next = 0;
+        long dropped = 0;
+        while (true) {
+            long end = m_nextSequence.get();
+            if (next == end) {
+                if (dropped > 0) {
+                    deliverDropped(next - 1, dropped);
+                    dropped = 0;
+                }
+                park(next);
+                continue;
+            }
+
+            if (end - next > CAPACITY) {
+                dropped += end - CAPACITY - next;
+                next = end - CAPACITY;
+            }
+
+            _Entry entry = m_messages.get(slot(next));
+            if (entry == null || entry.m_sequence < next) {
+                // Claimed but not stored yet, it won't be long.
+                Thread.onSpinWait();
+                continue;
+            }
+            if (entry.m_sequence == next) {
+                if (dropped > 0) {
+                    deliverDropped(next - 1, dropped);
+                    dropped = 0;
+                }
+                deliver(next, entry.m_message);
+            } else {
+                // Overwritten by a newer message while we were behind.
+                dropped++;
+            }
+            next++;
+        }
+    }
+
+    private void park(long next) {
+        m_dispatcherParked.set(true);
+        // Check again, a message could've been added before the flag was visible.
+        if (m_nextSequence.get() == next) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        m_dispatcherParked.set(false);
+    }
+
+    /**
+     * @param sequence of the last message dropped.
+     */
+    private void deliverDropped(long sequence, long dropped) {
+        deliver(sequence, "... " + dropped + " log messages dropped.");
+    }
+
+    private void deliver(long sequence, String message) {
+        for (_Registration registration : m_listeners) {
+            if (sequence < registration.firstSequence(sequence)) {
+                continue; // Returned by addListener()
+            }
+            try {
+                registration.m_listener.onMessageAdded(message);
+            } catch (RuntimeException e) {
+                Diagnostics.log(CONVERT, WARN, "WARNING: A log listener failed: " + e);
+            }
+        }
     }
 }
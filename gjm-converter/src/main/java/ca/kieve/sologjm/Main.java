@@ -8,8 +8,16 @@ import javafx.stage.Stage;
 
 public class Main extends Application {
     public static void main(String[] args) {
+        // Any arguments means a headless batch run, don't bring up JavaFX.
+        if (args.length > 0) {
+            System.exit(BatchConverter.run(args));
+        }
+
         // Initialize Managers
         LogManager.getInstance();
+
+        // Loads the converter while JavaFX starts, rather than on the first conversion.
+        Warmup.start(MxlParser.ScoreReader.fromSystemProperty());
         launch(args);
     }
 
@@ -1,29 +1,48 @@
 package ca.kieve.sologjm;
 
+import ca.kieve.sologjm.MxlParser.ScoreReader;
+import ca.kieve.sologjm.debug.Diagnostics;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.Slider;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.control.TextFormatter.Change;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.UnaryOperator;
 
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
+
 public class MainController implements LogManager.Listener {
     private static class SliderNumericOperator implements UnaryOperator<Change> {
         private final AtomicBoolean m_programmatic;
@@ -130,20 +149,116 @@ public class MainController implements LogManager.Listener {
         }
     }
 
+    /**
+     * Runs a conversion and saves the result, off the FX application thread.
+     */
+    private static class ConversionTask extends Task<ConversionResult>
+            implements ConversionMonitor
+    {
+        private final Converter m_converter;
+        private final File m_inputFile;
+        private final File m_saveFile;
+        private final ConversionParameters m_parameters;
+
+        private ConversionTask(Converter converter, File inputFile, File saveFile,
+                ConversionParameters parameters)
+        {
+            m_converter = converter;
+            m_inputFile = inputFile;
+            m_saveFile = saveFile;
+            m_parameters = parameters;
+        }
+
+        @Override
+        protected ConversionResult call() throws Exception {
+            // convert() would wait for it too, say why nothing's happening.
+            if (!m_converter.isWarm()) {
+                updateMessage("Waiting for the converter to start");
+                m_converter.awaitWarmup();
+            }
+            updateMessage("Reading " + m_inputFile.getName());
+            ConversionResult result = m_converter.convert(m_inputFile.toPath(), m_parameters,
+                    this);
+
+            updateMessage("Saving " + m_saveFile.getName());
+            try (OutputStream os = Files.newOutputStream(m_saveFile.toPath())) {
+                result.writeTo(os);
+            } catch (IOException e) {
+                // Don't leave a half written song behind
+                m_saveFile.delete();
+                throw e;
+            }
+            return result;
+        }
+
+        @Override
+        public void onProgress(int measuresRead, double fraction) {
+            updateProgress(fraction, 1d);
+            updateMessage("Measure " + measuresRead);
+        }
+    }
+
+    /**
+     * Reads what a score says about itself, off the FX application thread.
+     */
+    private static class HeaderTask extends Task<ScoreHeader> {
+        private final ScoreIndex m_index;
+        private final File m_file;
+
+        private HeaderTask(ScoreIndex index, File file) {
+            m_index = index;
+            m_file = file;
+        }
+
+        @Override
+        protected ScoreHeader call() throws Exception {
+            if (m_index == null) {
+                return MxlParser.scanHeader(m_file);
+            }
+            ScoreHeader header = m_index.get(m_file.toPath());
+            try {
+                m_index.save();
+            } catch (IOException e) {
+                Diagnostics.log(CONVERT, WARN, "WARNING: Couldn't save the score index: " + e);
+            }
+            return header;
+        }
+    }
+
     private static final String ERROR_CLASS = "error";
 
+    // Oldest lines are dropped past this
+    private static final int MAX_LOG_LINES = 5000;
+
+    // Scores kept read, for converting again with other settings
+    private static final int MODEL_CACHE_SIZE = 4;
+    private static final KeyCombination COPY_KEYS =
+            new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+
     private final LogManager m_logManager;
 
     private final FileChooser m_inputChooser;
     private final FileChooser m_outputChooser;
-    private final MxlParser m_mxlParser;
+    private final Converter m_converter;
+    private final ScoreIndex m_scoreIndex;
+
+    // Log messages not shown yet, filled from the log dispatcher thread
+    private final Queue<String> m_pendingLog;
+    private final AtomicBoolean m_logFlushScheduled;
 
     private Stage m_stage;
 
     private File m_inputFile;
 
+    // What was filled in from the last score, replaced by the next one unless edited since.
+    private String m_filledTitle;
+    private String m_filledAuthor;
+    private String m_filledBpm;
+
     private final AtomicBoolean m_programmatic;
 
+    private ConversionTask m_conversionTask;
+
     @FXML
     private TextField m_inputPath;
 
@@ -178,7 +293,16 @@ public class MainController implements LogManager.Listener {
     private CheckBox m_swingBeat;
 
     @FXML
-    private TextArea m_logArea;
+    private ListView<String> m_logView;
+
+    @FXML
+    private ProgressBar m_progressBar;
+
+    @FXML
+    private Label m_progressLabel;
+
+    @FXML
+    private Button m_cancelButton;
 
     @FXML
     private Button m_convertButton;
@@ -187,10 +311,14 @@ public class MainController implements LogManager.Listener {
         m_logManager = LogManager.getInstance();
         m_inputChooser = new FileChooser();
         m_outputChooser = new FileChooser();
-        m_mxlParser = new MxlParser();
+        m_converter = new Converter(ScoreReader.fromSystemProperty(),
+                ConversionCache.fromSystemProperty(), new ScoreModelCache(MODEL_CACHE_SIZE));
+        m_scoreIndex = ScoreIndex.fromSystemProperty();
+        m_filledTitle = "";
+        m_filledAuthor = "";
         m_programmatic = new AtomicBoolean(false);
-
-        m_logManager.addListener(this);
+        m_pendingLog = new ConcurrentLinkedQueue<>();
+        m_logFlushScheduled = new AtomicBoolean(false);
 
         FileChooser.ExtensionFilter mxlFileFilter =
                 new ExtensionFilter("MusicXML files (*.mxl)", "*.mxl");
@@ -207,15 +335,39 @@ public class MainController implements LogManager.Listener {
 
     @FXML
     public void initialize() {
-        for (String message : m_logManager.getMessages()) {
+        m_logView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        m_logView.setOnKeyPressed(event -> {
+            if (COPY_KEYS.match(event)) {
+                copySelectedLog();
+            }
+        });
+        for (String message : m_logManager.addListener(this)) {
             onMessageAdded(message);
         }
 
+        // Usually started by Main already, conversions wait for it.
+        if (!m_converter.isWarm()) {
+            m_progressLabel.setText("Starting the converter...");
+        }
+        m_converter.startWarmup().whenComplete(($, e) -> Platform.runLater(() -> {
+            // A conversion started meanwhile shows its own progress.
+            if (m_conversionTask == null) {
+                m_progressLabel.setText("");
+            }
+            if (e == null) {
+                m_logManager.addMessage("Converter ready.");
+            } else {
+                m_logManager.addMessage("Couldn't warm up, the first conversion will be slow.",
+                        e);
+            }
+        }));
+
         m_inputPathButton.setOnMouseClicked(event -> {
                 m_inputFile = m_inputChooser.showOpenDialog(m_stage);
                 if (m_inputFile != null) {
                     m_inputPath.setText(m_inputFile.getAbsolutePath());
                     unsetError(m_inputPath);
+                    readHeader(m_inputFile);
                 } else {
                     setError(m_inputPath);
                 }
@@ -227,6 +379,7 @@ public class MainController implements LogManager.Listener {
         SliderTextUpdater.addTo(m_programmatic, m_bpmField, m_bpmSlider);
         SliderNumericOperator.addTo(m_programmatic, m_bpmField, m_bpmSlider);
         setTextFromSlider(m_programmatic, m_bpmField, m_bpmSlider);
+        m_filledBpm = m_bpmField.getText();
 
         StringConverter<Double> volumeConverter = new StringConverter<>() {
             @Override
@@ -267,32 +420,169 @@ public class MainController implements LogManager.Listener {
             if (anyError) {
                 return;
             }
-            try {
-                m_mxlParser.parse(m_inputFile,
-                        m_songTitle.getText(),
-                        m_songAuthor.getText(),
-                        (int) Math.round(m_bpmSlider.getValue()),
-                        (int) Math.round(m_track1VolumeSlider.getValue()),
-                        (int) Math.round(m_track2VolumeSlider.getValue()),
-                        m_swingBeat.isSelected(),
-                        0, 0); // TODO: Let people shift octaves
-                File saveFile = m_outputChooser.showSaveDialog(m_stage);
-                saveFile.delete();
-                BufferedWriter bw = new BufferedWriter(new FileWriter(saveFile));
-                bw.write(m_mxlParser.getResult());
-                bw.close();
-            } catch (Exception e) {
-                m_logManager.addMessage("Failed to parse file.", e);
+
+            File saveFile = m_outputChooser.showSaveDialog(m_stage);
+            if (saveFile == null) {
+                return;
+            }
+            startConversion(saveFile);
+        });
+
+        m_cancelButton.setOnMouseClicked(event -> {
+            if (m_conversionTask != null) {
+                m_conversionTask.cancel();
+            }
+        });
+    }
+
+    /**
+     * Fill in the song information from the score, where the user hasn't typed their own.
+     */
+    private void readHeader(File file) {
+        HeaderTask task = new HeaderTask(m_scoreIndex, file);
+        task.setOnSucceeded(event -> {
+            // Another file was picked meanwhile
+            if (file != m_inputFile) {
+                return;
+            }
+            ScoreHeader header = task.getValue();
+            m_filledTitle = fill(m_songTitle, m_filledTitle, header.getTitle());
+            m_filledAuthor = fill(m_songAuthor, m_filledAuthor, header.getComposer());
+            if (header.getTempo() != ScoreHeader.NO_TEMPO
+                    && m_bpmField.getText().equals(m_filledBpm))
+            {
+                double bpm = Math.max(m_bpmSlider.getMin(),
+                        Math.min(m_bpmSlider.getMax(), header.getTempo()));
+                setSlider(m_programmatic, m_bpmSlider, bpm);
+                setTextFromSlider(m_programmatic, m_bpmField, m_bpmSlider);
+                m_filledBpm = m_bpmField.getText();
+            }
+            m_logManager.addMessage(file.getName() + ": " + header.describe());
+        });
+        task.setOnFailed(event -> m_logManager.addMessage(
+                "Couldn't read the song information.", task.getException()));
+
+        Thread thread = new Thread(task, "gjm-header");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return what the field holds now if it was filled, or what it was filled with before.
+     */
+    private static String fill(TextField textField, String filled, String value) {
+        String text = textField.getText();
+        if (!text.isBlank() && !text.equals(filled)) {
+            return filled;
+        }
+        textField.setText(value != null ? value : "");
+        return textField.getText();
+    }
+
+    private void startConversion(File saveFile) {
+        ConversionParameters parameters = new ConversionParameters(
+                m_songTitle.getText(),
+                m_songAuthor.getText(),
+                (int) Math.round(m_bpmSlider.getValue()),
+                (int) Math.round(m_track1VolumeSlider.getValue()),
+                (int) Math.round(m_track2VolumeSlider.getValue()),
+                m_swingBeat.isSelected(),
+                0, 0); // TODO: Let people shift octaves
+        ConversionTask task = new ConversionTask(m_converter, m_inputFile, saveFile, parameters);
+
+        task.setOnSucceeded(event -> {
+            ConversionResult result = task.getValue();
+            for (String warning : result.getWarnings()) {
+                m_logManager.addMessage(warning);
             }
+            m_logManager.addMessage("Saved " + saveFile.getAbsolutePath());
+            finishConversion(1d);
         });
+        task.setOnFailed(event -> {
+            m_logManager.addMessage("Failed to parse file.", task.getException());
+            finishConversion(0d);
+        });
+        task.setOnCancelled(event -> {
+            m_logManager.addMessage("Conversion cancelled.");
+            finishConversion(0d);
+        });
+
+        m_conversionTask = task;
+        m_progressBar.progressProperty().bind(task.progressProperty());
+        m_progressLabel.textProperty().bind(task.messageProperty());
+        setRunning(true);
+
+        Thread thread = new Thread(task, "gjm-conversion");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishConversion(double progress) {
+        m_conversionTask = null;
+        m_progressBar.progressProperty().unbind();
+        m_progressBar.setProgress(progress);
+        m_progressLabel.textProperty().unbind();
+        m_progressLabel.setText("");
+        setRunning(false);
+    }
+
+    /**
+     * Lock the inputs while a conversion is running, and only allow cancelling it.
+     */
+    private void setRunning(boolean running) {
+        m_inputPathButton.setDisable(running);
+        m_songTitle.setDisable(running);
+        m_songAuthor.setDisable(running);
+        m_bpmField.setDisable(running);
+        m_bpmSlider.setDisable(running);
+        m_track1VolumeField.setDisable(running);
+        m_track1VolumeSlider.setDisable(running);
+        m_track2VolumeField.setDisable(running);
+        m_track2VolumeSlider.setDisable(running);
+        m_swingBeat.setDisable(running);
+        m_convertButton.setDisable(running);
+        m_cancelButton.setDisable(!running);
     }
 
     @Override
     public void onMessageAdded(String message) {
-        Platform.runLater(() -> {
-            m_logArea.appendText(message);
-            m_logArea.appendText("\n");
-        });
+        m_pendingLog.add(message);
+        // Only one update in flight, it takes everything added until it runs.
+        if (m_logFlushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flushLog);
+        }
+    }
+
+    private void flushLog() {
+        m_logFlushScheduled.set(false);
+
+        List<String> lines = new ArrayList<>();
+        String message;
+        while ((message = m_pendingLog.poll()) != null) {
+            for (String line : message.split("\r?\n")) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        if (lines.size() > MAX_LOG_LINES) {
+            lines = lines.subList(lines.size() - MAX_LOG_LINES, lines.size());
+        }
+
+        ObservableList<String> items = m_logView.getItems();
+        int overflow = items.size() + lines.size() - MAX_LOG_LINES;
+        if (overflow > 0) {
+            items.remove(0, overflow);
+        }
+        items.addAll(lines);
+        m_logView.scrollTo(items.size() - 1);
+    }
+
+    private void copySelectedLog() {
+        ClipboardContent content = new ClipboardContent();
+        content.putString(String.join("\n", m_logView.getSelectionModel().getSelectedItems()));
+        Clipboard.getSystemClipboard().setContent(content);
     }
 
     private static void setTextFromSlider(AtomicBoolean programmatic, TextField textField,
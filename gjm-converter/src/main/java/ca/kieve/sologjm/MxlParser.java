@@ -1,5 +1,6 @@
 package ca.kieve.sologjm;
 
+import ca.kieve.sologjm.debug.Diagnostics;
 import jakarta.xml.bind.JAXBException;
 import org.audiveris.proxymusic.Attributes;
 import org.audiveris.proxymusic.Backup;
@@ -8,39 +9,58 @@ import org.audiveris.proxymusic.Direction;
 import org.audiveris.proxymusic.Forward;
 import org.audiveris.proxymusic.Note;
 import org.audiveris.proxymusic.Print;
+import org.audiveris.proxymusic.ScorePart;
 import org.audiveris.proxymusic.ScorePartwise;
 import org.audiveris.proxymusic.ScorePartwise.Part;
 import org.audiveris.proxymusic.ScorePartwise.Part.Measure;
 import org.audiveris.proxymusic.mxl.Mxl;
 import org.audiveris.proxymusic.mxl.Mxl.MxlException;
 import org.audiveris.proxymusic.mxl.RootFile;
-import org.audiveris.proxymusic.util.Marshalling;
 import org.audiveris.proxymusic.util.Marshalling.UnmarshallingException;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Category.PARSE;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.INFO;
+
 public class MxlParser {
     // Debug runner
     public static void main(String[] args)
-            throws IOException, MxlException, UnmarshallingException, JAXBException
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
     {
         MxlParser parser = new MxlParser();
 
         boolean swingBeat = false;
-        parser.parse(new File(MXL_FILE), "Everything I Wanted", "Billie Eilish", 126, 100, 70,
-                swingBeat, 0, 0);
-
         File debugFile = new File(DEBUG_FILE);
         debugFile.delete();
-        BufferedWriter bw = new BufferedWriter(new FileWriter(debugFile));
-        bw.write(parser.getResult());
-        bw.close();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(debugFile))) {
+            parser.parse(new File(MXL_FILE), bw, "Everything I Wanted", "Billie Eilish", 126, 100,
+                    70, swingBeat, 0, 0);
+        }
     }
 
     private static final String WORK_DIR = System.getProperty("user.dir");
@@ -61,42 +81,418 @@ public class MxlParser {
     private static final String MXL_FILE = WORK_DIR + "/assets/mxl/EverythingIWanted.mxl";
     private static final String DEBUG_FILE = WORK_DIR + "/assets/DEBUG.gjm";
 
-    private String m_result;
+    // A few measures of everything the readers handle, for warming them up.
+    private static final String WARMUP_SCORE = "/warmup/score.mxl";
+
+    // How much of the progress bar reading the score takes up
+    private static final double READ_PROGRESS_SHARE = 0.9;
+
+    /**
+     * How the MusicXML document is turned into {@link GjmBuilder} calls.
+     */
+    public enum ScoreReader {
+        /** Stream the document with StAX. Memory depends on a measure, not the score. */
+        STAX,
+
+        /** Unmarshal the whole document into proxymusic objects first. */
+        JAXB;
+
+        /**
+         * The reader selected with {@code -Dsologjm.reader=stax|jaxb}, defaulting to STAX.
+         */
+        public static ScoreReader fromSystemProperty() {
+            String value = System.getProperty("sologjm.reader");
+            if (value == null || value.isBlank()) {
+                return STAX;
+            }
+            return valueOf(value.strip().toUpperCase());
+        }
+    }
+
+    private final ScoreReader m_scoreReader;
+    private final ConversionCache m_cache;
+    private ScoreModelCache m_modelCache = null;
+    private boolean m_lenient = false;
+
+    public MxlParser() {
+        this(ScoreReader.fromSystemProperty(), ConversionCache.fromSystemProperty());
+    }
+
+    public MxlParser(ScoreReader scoreReader) {
+        this(scoreReader, null);
+    }
+
+    /**
+     * @param cache where finished conversions are kept and looked up, null to always convert.
+     */
+    public MxlParser(ScoreReader scoreReader, ConversionCache cache) {
+        m_scoreReader = scoreReader;
+        m_cache = cache;
+    }
+
+    /**
+     * Keep the scores read in memory, so converting one again with other parameters only
+     * post processes and writes it. Null to always read.
+     */
+    public void setModelCache(ScoreModelCache modelCache) {
+        m_modelCache = modelCache;
+    }
+
+    /**
+     * Leniently, what can't be converted is left out or approximated instead of failing the
+     * conversion, and reported as {@link ConversionIssue issues}. Timewise scores, and files that
+     * can't be read at all, still fail.
+     */
+    public void setLenient(boolean lenient) {
+        m_lenient = lenient;
+    }
+
+    public boolean isLenient() {
+        return m_lenient;
+    }
+
+    /**
+     * Start warming up this parser's reader in the background, see {@link Warmup}.
+     */
+    public CompletableFuture<Void> startWarmup() {
+        return Warmup.start(m_scoreReader);
+    }
+
+    public boolean isWarm() {
+        return Warmup.isDone(m_scoreReader);
+    }
+
+    public void parse(File file, Appendable out, String songTitle, String songAuthor, int bpm,
+            int trackVolume1, int trackVolume2, boolean swingBeat, int octaveOffset1,
+            int octaveOffset2)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        parse(file, out, songTitle, songAuthor, bpm, trackVolume1, trackVolume2, swingBeat,
+                octaveOffset1, octaveOffset2, ConversionMonitor.NONE);
+    }
+
+    /**
+     * Convert a file, reporting progress to and checking for cancellation with the given monitor.
+     * The GJM document is written to {@code out} as it is generated. If this throws, {@code out}
+     * may have been partially written to.
+     *
+     * With a cache, a file converted before with the same parameters is copied from it instead.
+     * Otherwise the conversion is stored there, and copied to {@code out} once complete. Lenient
+     * conversions are only stored if they had no issues, so the cache always matches a strict
+     * conversion.
+     *
+     * @throws java.util.concurrent.CancellationException if the monitor cancelled the conversion.
+     */
+    public void parse(File file, Appendable out, String songTitle, String songAuthor, int bpm,
+            int trackVolume1, int trackVolume2, boolean swingBeat, int octaveOffset1,
+            int octaveOffset2, ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        parseWithBuilder(file, out, songTitle, songAuthor, bpm, trackVolume1, trackVolume2,
+                swingBeat, octaveOffset1, octaveOffset2, monitor);
+    }
+
+    /**
+     * {@link #parse}, for {@link Converter}.
+     *
+     * @return the builder that wrote {@code out}, null if it was copied from the cache.
+     */
+    GjmBuilder parseWithBuilder(File file, Appendable out, String songTitle, String songAuthor,
+            int bpm, int trackVolume1, int trackVolume2, boolean swingBeat, int octaveOffset1,
+            int octaveOffset2, ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        if (m_cache == null) {
+            return convert(file, out, songTitle, songAuthor, bpm, trackVolume1, trackVolume2,
+                    swingBeat, octaveOffset1, octaveOffset2, monitor);
+        }
+
+        String key = m_cache.key(file, songTitle, songAuthor, bpm, trackVolume1, trackVolume2,
+                swingBeat, octaveOffset1, octaveOffset2);
+        if (m_cache.read(key, out)) {
+            monitor.onProgress(0, 1d);
+            return null;
+        }
+
+        Path tempFile = m_cache.newTempFile();
+        try {
+            GjmBuilder gjmBuilder;
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                gjmBuilder = convert(file, writer, songTitle, songAuthor, bpm, trackVolume1,
+                        trackVolume2, swingBeat, octaveOffset1, octaveOffset2, monitor);
+            }
+            ConversionCache.copy(tempFile, out);
+            if (gjmBuilder.getIssues().isEmpty()) {
+                m_cache.publish(key, tempFile);
+            }
+            return gjmBuilder;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private GjmBuilder convert(File file, Appendable out, String songTitle, String songAuthor,
+            int bpm, int trackVolume1, int trackVolume2, boolean swingBeat, int octaveOffset1,
+            int octaveOffset2, ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        // Taken before reading, if the file changes while it's read the model is read again.
+        long lastModified = file.lastModified();
+        long length = file.length();
+        ScoreModelCache modelCache = m_modelCache;
+        GjmBuilder model = cachedModel(modelCache, file, lastModified, length);
+
+        GjmBuilder gjmBuilder;
+        if (model != null) {
+            if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                Diagnostics.log(CONVERT, DEBUG, "Reusing the score read from " + file);
+            }
+            gjmBuilder = model.withParameters(songTitle, songAuthor, bpm, trackVolume1,
+                    trackVolume2, swingBeat, octaveOffset1, octaveOffset2);
+            monitor.onProgress(gjmBuilder.getMeasureCount(), READ_PROGRESS_SHARE);
+        } else {
+            gjmBuilder = new GjmBuilder(songTitle, songAuthor, bpm, trackVolume1, trackVolume2,
+                    swingBeat, octaveOffset1, octaveOffset2);
+            gjmBuilder.setLenient(m_lenient);
+            Warmup.await(m_scoreReader);
+            read(file, gjmBuilder, monitor);
+        }
+        int measureCount = gjmBuilder.getMeasureCount();
+
+        checkCancelled(monitor);
+        gjmBuilder.postProcess();
+
+        checkCancelled(monitor);
+        gjmBuilder.writeGjm(out);
+        monitor.onProgress(measureCount, 1d);
+
+        // Post processed, so converting again with the same swing only writes.
+        if (modelCache != null) {
+            modelCache.put(file, lastModified, length, gjmBuilder);
+        }
+        return gjmBuilder;
+    }
+
+    /**
+     * @return the score read from the file before in the same mode, strict or lenient, or null.
+     */
+    private GjmBuilder cachedModel(ScoreModelCache modelCache, File file, long lastModified,
+            long length)
+    {
+        GjmBuilder model = modelCache == null ? null : modelCache.get(file, lastModified, length);
+        return model != null && model.isLenient() == m_lenient ? model : null;
+    }
+
+    /**
+     * Convert a file with several sets of parameters, reading it once. The variants with the same
+     * swing share one post processed score, and every variant is then written concurrently to its
+     * own output. The conversion cache isn't used, the model cache is.
+     *
+     * @param variants the output to write for each set of parameters. Outputs are not flushed or
+     *                 closed. If this throws, any of them may have been partially written to.
+     * @return the issues of a lenient conversion, the same for every variant.
+     */
+    public List<ConversionIssue> parseVariants(File file,
+            Map<ConversionParameters, ? extends Appendable> variants, ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        if (variants.isEmpty()) {
+            return List.of();
+        }
+
+        long lastModified = file.lastModified();
+        long length = file.length();
+        ScoreModelCache modelCache = m_modelCache;
+        GjmBuilder model = cachedModel(modelCache, file, lastModified, length);
+        if (model == null) {
+            model = variants.keySet().iterator().next().newBuilder();
+            model.setLenient(m_lenient);
+            Warmup.await(m_scoreReader);
+            read(file, model, monitor);
+            if (modelCache != null) {
+                modelCache.put(file, lastModified, length, model);
+            }
+        } else {
+            monitor.onProgress(model.getMeasureCount(), READ_PROGRESS_SHARE);
+        }
+        int measureCount = model.getMeasureCount();
+
+        // Post processing only depends on the swing, do it at most twice.
+        checkCancelled(monitor);
+        Map<Boolean, GjmBuilder> postProcessed = new HashMap<>();
+        for (ConversionParameters parameters : variants.keySet()) {
+            GjmBuilder parsed = model;
+            postProcessed.computeIfAbsent(parameters.isSwingBeat(), swing -> {
+                GjmBuilder builder = parameters.reuse(parsed);
+                builder.postProcess();
+                return builder;
+            });
+        }
 
-    public String getResult() {
-        return m_result;
+        checkCancelled(monitor);
+        List<Callable<Void>> tasks = new ArrayList<>(variants.size());
+        for (Map.Entry<ConversionParameters, ? extends Appendable> variant
+                : variants.entrySet())
+        {
+            ConversionParameters parameters = variant.getKey();
+            Appendable out = variant.getValue();
+            GjmBuilder builder = postProcessed.get(parameters.isSwingBeat());
+            tasks.add(() -> {
+                parameters.reuse(builder).writeGjm(out);
+                return null;
+            });
+        }
+        for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        monitor.onProgress(measureCount, 1d);
+        return model.getIssues();
     }
 
-    public void parse(File file, String songTitle, String songAuthor, int bpm, int trackVolume1,
-            int trackVolume2, boolean swingBeat, int octaveOffset1, int octaveOffset2)
-            throws IOException, MxlException, UnmarshallingException, JAXBException
+    private void read(File file, GjmBuilder gjmBuilder, ConversionMonitor monitor)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
     {
-        // First, test opening the .MXL file
-        Marshalling.getContext(ScorePartwise.class);
+        // Reading is the bulk of the work, building and writing the rest.
+        ConversionMonitor readMonitor = new ConversionMonitor() {
+            @Override
+            public void onProgress(int measuresRead, double fraction) {
+                monitor.onProgress(measuresRead, fraction * READ_PROGRESS_SHARE);
+            }
 
-        Mxl.Input mif = new Mxl.Input(file);
+            @Override
+            public boolean isCancelled() {
+                return monitor.isCancelled();
+            }
+        };
 
-        RootFile first = mif.getRootFiles().get(0);
-        ZipEntry zipEntry = mif.getEntry(first.fullPath);
-        InputStream is = mif.getInputStream(zipEntry);
-        ScorePartwise newScorePartwise = (ScorePartwise) Marshalling.unmarshal(is);
+        try (Mxl.Input mif = new Mxl.Input(file)) {
+            RootFile first = mif.getRootFiles().get(0);
+            ZipEntry zipEntry = mif.getEntry(first.fullPath);
+            try (InputStream is = mif.getInputStream(zipEntry)) {
+                switch (m_scoreReader) {
+                case STAX -> new MxlStreamReader(gjmBuilder, readMonitor)
+                        .read(is, zipEntry.getSize());
+                case JAXB -> readJaxb(is, gjmBuilder, readMonitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert the bundled score and throw the result away. Goes through the same steps as a
+     * real file, opening the MXL container included.
+     */
+    static void warmUp(ScoreReader scoreReader)
+            throws IOException, MxlException, UnmarshallingException, JAXBException,
+            XMLStreamException
+    {
+        // Mxl.Input reads a zip file, not a stream.
+        Path score = Files.createTempFile("sologjm-warmup", ".mxl");
+        try {
+            try (InputStream is = MxlParser.class.getResourceAsStream(WARMUP_SCORE)) {
+                if (is == null) {
+                    throw new IOException("Missing " + WARMUP_SCORE);
+                }
+                Files.copy(is, score, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            GjmBuilder gjmBuilder = new GjmBuilder("Warmup", "Warmup", 120, 100, 40, false, 0, 0);
+            new MxlParser(scoreReader, null).read(score.toFile(), gjmBuilder,
+                    ConversionMonitor.NONE);
+            gjmBuilder.postProcess();
+            gjmBuilder.writeGjm(Writer.nullWriter());
+        } finally {
+            Files.deleteIfExists(score);
+        }
+    }
+
+    private static void checkCancelled(ConversionMonitor monitor) {
+        if (monitor.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Read the title, composer, part count and opening key, time and tempo of an MXL file without
+     * converting it.
+     */
+    public static ScoreHeader readHeader(File file)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        return readHeader(file, false);
+    }
+
+    /**
+     * {@link #readHeader(File)}, and count the measures too. See
+     * {@link MxlStreamReader#scanHeader}.
+     */
+    public static ScoreHeader scanHeader(File file)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        return readHeader(file, true);
+    }
+
+    private static ScoreHeader readHeader(File file, boolean countMeasures)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        try (Mxl.Input mif = new Mxl.Input(file)) {
+            RootFile first = mif.getRootFiles().get(0);
+            ZipEntry zipEntry = mif.getEntry(first.fullPath);
+            try (InputStream is = mif.getInputStream(zipEntry)) {
+                return countMeasures
+                        ? MxlStreamReader.scanHeader(is)
+                        : MxlStreamReader.readHeader(is);
+            }
+        }
+    }
+
+    private static void readJaxb(InputStream is, GjmBuilder gjmBuilder, ConversionMonitor monitor)
+            throws UnmarshallingException, JAXBException, XMLStreamException
+    {
+        ScorePartwise newScorePartwise = XmlParsers.unmarshalScore(is);
+        checkCancelled(monitor);
 
         List<Part> parts = newScorePartwise.getPart();
-        System.out.printf("There are %d parts.\n", parts.size());
+        Diagnostics.logf(CONVERT, INFO, "There are %d parts.\n", parts.size());
 
-        GjmBuilder gjmBuilder = new GjmBuilder(songTitle, songAuthor, bpm, trackVolume1,
-                trackVolume2, swingBeat, octaveOffset1, octaveOffset2);
+        int totalMeasures = 0;
+        for (Part part : parts) {
+            totalMeasures += part.getMeasure().size();
+        }
 
+        int measureCount = 0;
         for (Part part : parts) {
             List<Measure> measures = part.getMeasure();
-            System.out.printf("There are %d measures.\n", measures.size());
-            int measureIndex = 0;
+            Diagnostics.logf(CONVERT, INFO, "There are %d measures.\n", measures.size());
+            Object partId = part.getId();
+            if (partId instanceof ScorePart) {
+                // An IDREF, unmarshalled to what it refers to
+                partId = ((ScorePart) partId).getId();
+            }
             for (Measure measure : measures) {
-//                if (measureIndex != 0 && measureIndex != 15) {
-//                    measureIndex++;
-//                    continue;
-//                }
-
+                gjmBuilder.beginMeasure(partId == null ? null : partId.toString(),
+                        measure.getNumber());
                 List<Object> measureParts = measure.getNoteOrBackupOrForward();
                 for (Object measurePart : measureParts) {
                     if (measurePart instanceof Print) {
@@ -114,18 +510,17 @@ public class MxlParser {
                     } else if (measurePart instanceof Barline) {
                         gjmBuilder.parseBarline((Barline) measurePart);
                     } else {
-                        System.out.println("Dono: " + measurePart);
+                        if (Diagnostics.isEnabled(PARSE, DEBUG)) {
+                            Diagnostics.log(PARSE, DEBUG, "Dono: " + measurePart);
+                        }
                     }
                 }
                 gjmBuilder.nextMeasure();
-                measureIndex++;
+
+                measureCount++;
+                monitor.onProgress(measureCount, measureCount / (double) totalMeasures);
+                checkCancelled(monitor);
             }
         }
-
-        gjmBuilder.postProcess();
-
-        m_result = gjmBuilder.writeGjm();
-        System.out.println("====================================================");
-        System.out.println(m_result);
     }
 }
@@ -0,0 +1,652 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.GjmBuilder.AttributesEvent;
+import ca.kieve.sologjm.GjmBuilder.BarlineEvent;
+import ca.kieve.sologjm.GjmBuilder.NoteEvent;
+import ca.kieve.sologjm.GjmBuilder.Unsupported;
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Category.PARSE;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.INFO;
+
+/**
+ * Pull based reader for partwise MusicXML documents.
+ *
+ * Rather than unmarshalling the whole score into the proxymusic object graph, this walks the
+ * {@code <part>/<measure>} elements with StAX and calls straight into the {@link GjmBuilder}. Only
+ * the element currently being read is held on to, so memory depends on a measure and not the
+ * score.
+ *
+ * It marks the same unsupported things {@link GjmBuilder#parseNote(org.audiveris.proxymusic.Note)}
+ * does, for the builder to reject or, leniently, work around. Timewise scores are always rejected.
+ *
+ * Progress is reported to the {@link ConversionMonitor} after every measure, as the fraction of the
+ * document's bytes read so far. Cancellation is checked at the same points.
+ */
+public class MxlStreamReader {
+    private final GjmBuilder m_builder;
+    private final ConversionMonitor m_monitor;
+
+    private CountingInputStream m_input;
+    private long m_totalBytes;
+    private int m_measureCount;
+
+    // Reused for every element, the builder copies what it needs out of them.
+    private final AttributesEvent m_attributes;
+    private final BarlineEvent m_barline;
+    private final NoteEvent m_note;
+
+    public MxlStreamReader(GjmBuilder builder) {
+        this(builder, ConversionMonitor.NONE);
+    }
+
+    public MxlStreamReader(GjmBuilder builder, ConversionMonitor monitor) {
+        m_builder = builder;
+        m_monitor = monitor;
+        m_attributes = new AttributesEvent();
+        m_barline = new BarlineEvent();
+        m_note = new NoteEvent();
+    }
+
+    public void read(InputStream is) throws XMLStreamException {
+        read(is, -1);
+    }
+
+    /**
+     * @param totalBytes the length of the document, used for progress. -1 if unknown.
+     */
+    public void read(InputStream is, long totalBytes) throws XMLStreamException {
+        m_input = new CountingInputStream(is);
+        m_totalBytes = totalBytes;
+        m_measureCount = 0;
+
+        XMLStreamReader reader = XmlParsers.createStreamReader(m_input);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                case "score-partwise" -> {
+                    // Root, descend into it
+                }
+                case "score-timewise" -> throw new UnsupportedOperationException(
+                        "Only partwise scores supported.");
+                case "part" -> readPart(reader);
+                default -> skipElement(reader); // work, identification, part-list, etc.
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read only the title, composer, part count and the opening key, time and tempo of a score.
+     * Stops reading at the end of the first measure, so the measure count is
+     * {@link ScoreHeader#NO_MEASURE_COUNT}.
+     */
+    public static ScoreHeader readHeader(InputStream is) throws XMLStreamException {
+        return readHeader(is, false);
+    }
+
+    /**
+     * Like {@link #readHeader(InputStream)}, but go on to count the measures of the first part.
+     * They're skipped over rather than read, and the other parts aren't looked at.
+     */
+    public static ScoreHeader scanHeader(InputStream is) throws XMLStreamException {
+        return readHeader(is, true);
+    }
+
+    private static ScoreHeader readHeader(InputStream is, boolean countMeasures)
+            throws XMLStreamException
+    {
+        XMLStreamReader reader = XmlParsers.createStreamReader(is);
+        try {
+            String workTitle = null;
+            String movementTitle = null;
+            String composer = null;
+            int soundTempo = ScoreHeader.NO_TEMPO;
+            int metronomeTempo = ScoreHeader.NO_TEMPO;
+            int partCount = 0;
+            int keyFifths = ScoreHeader.NO_KEY;
+            String keyMode = null;
+            String timeSignature = null;
+            boolean hasTime = false;
+            int measureCount = ScoreHeader.NO_MEASURE_COUNT;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT
+                        && reader.getLocalName().equals("measure"))
+                {
+                    if (countMeasures) {
+                        measureCount = 1 + countMeasures(reader);
+                    }
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                case "work-title" -> workTitle = reader.getElementText().strip();
+                case "movement-title" -> movementTitle = reader.getElementText().strip();
+                case "creator" -> {
+                    boolean isComposer =
+                            "composer".equals(reader.getAttributeValue(null, "type"));
+                    String text = reader.getElementText().strip();
+                    if (isComposer && composer == null) {
+                        composer = text;
+                    }
+                }
+                case "sound" -> {
+                    String tempo = reader.getAttributeValue(null, "tempo");
+                    if (tempo != null && soundTempo == ScoreHeader.NO_TEMPO) {
+                        soundTempo = parseTempo(tempo);
+                    }
+                }
+                case "metronome" -> {
+                    int tempo = readQuarterMetronome(reader);
+                    if (metronomeTempo == ScoreHeader.NO_TEMPO) {
+                        metronomeTempo = tempo;
+                    }
+                }
+                // Only inside a key. There's one per staff at most, the same in anything we
+                // can convert.
+                case "fifths" -> {
+                    String fifths = reader.getElementText().strip();
+                    if (keyFifths == ScoreHeader.NO_KEY) {
+                        keyFifths = parseInt(fifths, ScoreHeader.NO_KEY);
+                    }
+                }
+                case "mode" -> {
+                    String mode = reader.getElementText().strip();
+                    if (keyMode == null && !mode.isEmpty()) {
+                        keyMode = mode;
+                    }
+                }
+                case "time" -> {
+                    if (!hasTime) {
+                        hasTime = true;
+                        timeSignature = readHeaderTime(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                case "score-part" -> {
+                    partCount++;
+                    skipElement(reader);
+                }
+                case "defaults", "credit", "note", "print" -> skipElement(reader);
+                default -> {
+                    // Descend, the first measure is inside the first part
+                }
+                }
+            }
+            if (countMeasures && measureCount == ScoreHeader.NO_MEASURE_COUNT) {
+                measureCount = 0;
+            }
+
+            String title = workTitle != null && !workTitle.isEmpty() ? workTitle : movementTitle;
+            if (title != null && title.isEmpty()) {
+                title = null;
+            }
+            if (composer != null && composer.isEmpty()) {
+                composer = null;
+            }
+            int tempo = soundTempo != ScoreHeader.NO_TEMPO ? soundTempo : metronomeTempo;
+            return new ScoreHeader(title, composer, tempo, partCount, keyFifths, keyMode,
+                    timeSignature, measureCount);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the measures left in the part, with the reader just past the end of one of its
+     *         measures.
+     */
+    private static int countMeasures(XMLStreamReader reader) throws XMLStreamException {
+        int count = 0;
+        while (nextChild(reader)) {
+            if (reader.getLocalName().equals("measure")) {
+                count++;
+            }
+            skipElement(reader);
+        }
+        return count;
+    }
+
+    /**
+     * @return a time signature like "3/4", or "2/4+3/8" for composite ones. Null for senza misura.
+     */
+    private static String readHeaderTime(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder result = new StringBuilder();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "beats" -> {
+                if (result.length() > 0) {
+                    result.append('+');
+                }
+                result.append(reader.getElementText().strip());
+            }
+            case "beat-type" -> result.append('/').append(reader.getElementText().strip());
+            default -> skipElement(reader);
+            }
+        }
+        return result.length() > 0 ? result.toString() : null;
+    }
+
+    /**
+     * @return the per-minute value of a quarter note metronome mark, or NO_TEMPO for any other
+     *         beat unit.
+     */
+    private static int readQuarterMetronome(XMLStreamReader reader) throws XMLStreamException {
+        String beatUnit = null;
+        String perMinute = null;
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "beat-unit" -> beatUnit = reader.getElementText().strip();
+            case "per-minute" -> perMinute = reader.getElementText().strip();
+            default -> skipElement(reader);
+            }
+        }
+        if (!"quarter".equals(beatUnit) || perMinute == null) {
+            return ScoreHeader.NO_TEMPO;
+        }
+        return parseTempo(perMinute);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static int parseTempo(String tempo) {
+        try {
+            return (int) Math.round(Double.parseDouble(tempo.strip()));
+        } catch (NumberFormatException e) {
+            // Free text, like "c. 120"
+            return ScoreHeader.NO_TEMPO;
+        }
+    }
+
+    private void readPart(XMLStreamReader reader) throws XMLStreamException {
+        String partId = reader.getAttributeValue(null, "id");
+        int measureCount = 0;
+        while (nextChild(reader)) {
+            if (reader.getLocalName().equals("measure")) {
+                m_builder.beginMeasure(partId, reader.getAttributeValue(null, "number"));
+                readMeasure(reader);
+                measureCount++;
+            } else {
+                skipElement(reader);
+            }
+        }
+        Diagnostics.logf(CONVERT, INFO, "Part %s has %d measures.\n", partId, measureCount);
+    }
+
+    private void readMeasure(XMLStreamReader reader) throws XMLStreamException {
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "attributes" -> readAttributes(reader);
+            case "note" -> readNote(reader);
+            case "barline" -> readBarline(reader);
+            case "forward" -> {
+                m_builder.parseForward();
+                skipElement(reader);
+            }
+            case "print", "direction", "backup" -> skipElement(reader); // Nothing we use
+            default -> {
+                if (Diagnostics.isEnabled(PARSE, DEBUG)) {
+                    Diagnostics.log(PARSE, DEBUG, "Dono: " + reader.getLocalName());
+                }
+                skipElement(reader);
+            }
+            }
+        }
+        m_builder.nextMeasure();
+
+        m_measureCount++;
+        double fraction = m_totalBytes > 0
+                ? Math.min(1d, m_input.getCount() / (double) m_totalBytes)
+                : 0d;
+        m_monitor.onProgress(m_measureCount, fraction);
+        if (m_monitor.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void readAttributes(XMLStreamReader reader) throws XMLStreamException {
+        AttributesEvent attributes = m_attributes;
+        attributes.clear();
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "key" -> {
+                if (attributes.m_keyCount++ == 0) {
+                    Integer fifths = readKeyFifths(reader);
+                    if (fifths == null) {
+                        attributes.m_isKeyNonTraditional = true;
+                    } else {
+                        attributes.m_fifths = fifths;
+                    }
+                } else {
+                    skipElement(reader);
+                }
+            }
+            case "time" -> {
+                if (attributes.m_timeCount++ == 0) {
+                    readTime(reader, attributes);
+                } else {
+                    skipElement(reader);
+                }
+            }
+            case "clef" -> {
+                attributes.m_clefCount++;
+                String sign = readClefSign(reader);
+                if (attributes.m_clefCount == 1) {
+                    attributes.m_clefSign1 = sign;
+                } else if (attributes.m_clefCount == 2) {
+                    attributes.m_clefSign2 = sign;
+                }
+            }
+            default -> skipElement(reader); // divisions, staves, etc.
+            }
+        }
+        m_builder.parseAttributes(attributes);
+    }
+
+    /**
+     * @return null for a non-traditional key.
+     */
+    private static Integer readKeyFifths(XMLStreamReader reader) throws XMLStreamException {
+        Integer fifths = null;
+        while (nextChild(reader)) {
+            if (reader.getLocalName().equals("fifths")) {
+                fifths = readInt(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return fifths;
+    }
+
+    private static void readTime(XMLStreamReader reader, AttributesEvent attributes)
+            throws XMLStreamException
+    {
+        boolean hasBeats = false;
+        boolean hasBeatType = false;
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "beats" -> {
+                // -1 for beats like 3+2
+                int beats = parseInt(reader.getElementText().strip(), -1);
+                if (!hasBeats) {
+                    attributes.m_beats = beats;
+                    hasBeats = true;
+                }
+            }
+            case "beat-type" -> {
+                int beatType = parseInt(reader.getElementText().strip(), -1);
+                if (!hasBeatType) {
+                    attributes.m_beatType = beatType;
+                    hasBeatType = true;
+                }
+            }
+            default -> skipElement(reader);
+            }
+        }
+        if (!hasBeats || !hasBeatType || attributes.m_beats < 0 || attributes.m_beatType < 0) {
+            attributes.m_isTimeUnmeasured = true;
+        }
+    }
+
+    private static String readClefSign(XMLStreamReader reader) throws XMLStreamException {
+        String sign = null;
+        while (nextChild(reader)) {
+            if (reader.getLocalName().equals("sign")) {
+                sign = reader.getElementText().strip();
+            } else {
+                skipElement(reader);
+            }
+        }
+        return sign;
+    }
+
+    private void readBarline(XMLStreamReader reader) throws XMLStreamException {
+        BarlineEvent barline = m_barline;
+        barline.clear();
+        while (nextChild(reader)) {
+            if (reader.getLocalName().equals("repeat")) {
+                barline.m_hasRepeat = true;
+                barline.m_repeatForward =
+                        "forward".equals(reader.getAttributeValue(null, "direction"));
+                String times = reader.getAttributeValue(null, "times");
+                if (times != null) {
+                    barline.m_repeatTimes = Integer.parseInt(times.strip());
+                }
+            }
+            skipElement(reader);
+        }
+        m_builder.parseBarline(barline);
+    }
+
+    private void readNote(XMLStreamReader reader) throws XMLStreamException {
+        NoteEvent note = m_note;
+        note.clear();
+
+        checkNoteAttributes(reader, note);
+
+        int dotCount = 0;
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "grace" -> markAndSkip(reader, note, Unsupported.GRACE);
+            case "cue" -> markAndSkip(reader, note, Unsupported.CUE);
+            case "unpitched" -> markAndSkip(reader, note, Unsupported.UNPITCHED);
+            case "instrument" -> markAndSkip(reader, note, Unsupported.INSTRUMENT);
+            case "footnote" -> markAndSkip(reader, note, Unsupported.FOOTNOTE);
+            case "level" -> markAndSkip(reader, note, Unsupported.LEVEL);
+            case "time-modification" -> markAndSkip(reader, note, Unsupported.TIME_MODIFICATION);
+            case "notehead" -> markAndSkip(reader, note, Unsupported.NOTEHEAD);
+            case "notehead-text" -> markAndSkip(reader, note, Unsupported.NOTEHEAD_TEXT);
+            case "play" -> markAndSkip(reader, note, Unsupported.PLAY);
+            case "chord" -> {
+                note.m_isChord = true;
+                skipElement(reader);
+            }
+            case "rest" -> {
+                if (reader.getAttributeValue(null, "measure") != null) {
+                    note.mark(Unsupported.REST_MEASURE);
+                }
+                note.m_isRest = true;
+                skipElement(reader);
+            }
+            case "pitch" -> readPitch(reader, note);
+            case "type" -> {
+                if (reader.getAttributeValue(null, "size") != null) {
+                    note.mark(Unsupported.TYPE_SIZE);
+                }
+                note.m_type = reader.getElementText().strip();
+            }
+            case "dot" -> {
+                if (++dotCount > 1) {
+                    note.mark(Unsupported.DOTS);
+                }
+                if (reader.getAttributeValue(null, "placement") != null) {
+                    note.mark(Unsupported.DOT_PLACEMENT);
+                }
+                note.m_isDotted = true;
+                skipElement(reader);
+            }
+            case "accidental" -> note.m_accidental = reader.getElementText().strip();
+            case "tie" -> {
+                if (reader.getAttributeValue(null, "time-only") != null) {
+                    note.mark(Unsupported.TIE_TIME_ONLY);
+                }
+                if ("start".equals(reader.getAttributeValue(null, "type"))) {
+                    note.m_tieStart = true;
+                } else {
+                    note.m_tieEnd = true;
+                }
+                skipElement(reader);
+            }
+            case "staff" -> note.m_staff = readInt(reader);
+            case "notations" -> readNotations(reader, note);
+            default -> skipElement(reader); // duration, voice, stem, beam, lyric, etc.
+            }
+        }
+
+        // The accidental is only meaningful with a pitch, like the proxymusic path.
+        if (!note.m_hasPitch) {
+            note.m_accidental = null;
+        }
+
+        m_builder.parseNote(note);
+    }
+
+    private static void checkNoteAttributes(XMLStreamReader reader, NoteEvent note) {
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            Unsupported unsupported = switch (reader.getAttributeLocalName(i)) {
+            case "dynamics" -> Unsupported.DYNAMICS;
+            case "end-dynamics" -> Unsupported.END_DYNAMICS;
+            case "attack" -> Unsupported.ATTACK;
+            case "release" -> Unsupported.RELEASE;
+            case "time-only" -> Unsupported.TIME_ONLY;
+            case "pizzicato" -> Unsupported.PIZZICATO;
+            case "font-family" -> Unsupported.FONT_FAMILY;
+            case "font-style" -> Unsupported.FONT_STYLE;
+            case "font-size" -> Unsupported.FONT_SIZE;
+            case "font-weight" -> Unsupported.FONT_WEIGHT;
+            case "color" -> Unsupported.COLOR;
+            case "relative-x" -> Unsupported.RELATIVE_X;
+            case "relative-y" -> Unsupported.RELATIVE_Y;
+            case "print-dot" -> Unsupported.PRINT_DOT;
+            case "print-lyric" -> Unsupported.PRINT_LYRIC;
+            case "print-spacing" -> Unsupported.PRINT_SPACING;
+            default -> null;
+            };
+            if (unsupported != null) {
+                note.mark(unsupported);
+            }
+        }
+    }
+
+    private static void markAndSkip(XMLStreamReader reader, NoteEvent note,
+            Unsupported unsupported)
+            throws XMLStreamException
+    {
+        note.mark(unsupported);
+        skipElement(reader);
+    }
+
+    private static void readPitch(XMLStreamReader reader, NoteEvent note)
+            throws XMLStreamException
+    {
+        note.m_hasPitch = true;
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "step" -> note.m_step = reader.getElementText().strip().charAt(0);
+            case "octave" -> note.m_octave = readInt(reader);
+            case "alter" -> {
+                double alter = Double.parseDouble(reader.getElementText().strip());
+                if (alter != Math.rint(alter)) {
+                    note.mark(Unsupported.MICROTONE);
+                }
+                note.m_alter = (int) Math.rint(alter);
+            }
+            default -> skipElement(reader);
+            }
+        }
+    }
+
+    private static void readNotations(XMLStreamReader reader, NoteEvent note)
+            throws XMLStreamException
+    {
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+            case "articulations" -> readArticulations(reader, note);
+            case "arpeggiate" -> {
+                note.m_isArpeggiate = true;
+                skipElement(reader);
+            }
+            // Allowed, but GJM has nothing to map them to.
+            case "tied", "slur", "slide", "fermata", "footnote", "level" -> skipElement(reader);
+            default -> {
+                if (note.m_notation == null) {
+                    note.m_notation = reader.getLocalName();
+                }
+                markAndSkip(reader, note, Unsupported.NOTATION);
+            }
+            }
+        }
+    }
+
+    private static void readArticulations(XMLStreamReader reader, NoteEvent note)
+            throws XMLStreamException
+    {
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (name.equals("staccato")) {
+                note.m_isStaccato = true;
+            } else if (!name.equals("accent")) {
+                if (note.m_articulation == null) {
+                    note.m_articulation = name;
+                }
+                note.mark(Unsupported.ARTICULATION);
+            }
+            skipElement(reader);
+        }
+    }
+
+    /*
+     * StAX helpers
+     */
+
+    /**
+     * Advance to the next child element of the element the reader is currently in.
+     *
+     * @return true if positioned on a child's start tag, false if positioned on the parent's end
+     *         tag.
+     */
+    static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip past the end tag of the element the reader is currently positioned on.
+     */
+    static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static int readInt(XMLStreamReader reader) throws XMLStreamException {
+        return Integer.parseInt(reader.getElementText().strip());
+    }
+}
@@ -0,0 +1,143 @@
+package ca.kieve.sologjm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bits of song information an MXL file carries before its first notes, and optionally how
+ * many measures it has.
+ */
+public class ScoreHeader {
+    public static final int NO_TEMPO = -1;
+    public static final int NO_KEY = Integer.MIN_VALUE;
+    public static final int NO_MEASURE_COUNT = -1;
+
+    private static final String[] MAJOR_KEYS = {
+        "Cb", "Gb", "Db", "Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#"
+    };
+    private static final String[] MINOR_KEYS = {
+        "Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#", "G#", "D#", "A#"
+    };
+
+    private final String m_title;
+    private final String m_composer;
+    private final int m_tempo;
+    private final int m_partCount;
+    private final int m_keyFifths;
+    private final String m_keyMode;
+    private final String m_timeSignature;
+    private final int m_measureCount;
+
+    public ScoreHeader(String title, String composer, int tempo, int partCount, int keyFifths,
+            String keyMode, String timeSignature, int measureCount)
+    {
+        m_title = title;
+        m_composer = composer;
+        m_tempo = tempo;
+        m_partCount = partCount;
+        m_keyFifths = keyFifths;
+        m_keyMode = keyMode;
+        m_timeSignature = timeSignature;
+        m_measureCount = measureCount;
+    }
+
+    /**
+     * @return the work title, falling back to the movement title. Null if neither is set.
+     */
+    public String getTitle() {
+        return m_title;
+    }
+
+    /**
+     * @return the composer credited in the identification block, or null.
+     */
+    public String getComposer() {
+        return m_composer;
+    }
+
+    /**
+     * @return the quarter notes per minute of the first measure, or {@link #NO_TEMPO}.
+     */
+    public int getTempo() {
+        return m_tempo;
+    }
+
+    /**
+     * @return the number of parts declared in the part list.
+     */
+    public int getPartCount() {
+        return m_partCount;
+    }
+
+    /**
+     * @return the sharps (positive) or flats (negative) of the first measure's key, or
+     *         {@link #NO_KEY}.
+     */
+    public int getKeyFifths() {
+        return m_keyFifths;
+    }
+
+    /**
+     * @return the mode of the first measure's key, like "major" or "minor". Null if not given.
+     */
+    public String getKeyMode() {
+        return m_keyMode;
+    }
+
+    /**
+     * @return the key as people say it, like "Eb major", or the signature for other modes, like
+     *         "2 sharps dorian". Null if there's no key.
+     */
+    public String getKeyName() {
+        if (m_keyFifths == NO_KEY || m_keyFifths < -7 || m_keyFifths > 7) {
+            return null;
+        }
+        if (m_keyMode == null || m_keyMode.equals("major")) {
+            return MAJOR_KEYS[m_keyFifths + 7] + " major";
+        }
+        if (m_keyMode.equals("minor")) {
+            return MINOR_KEYS[m_keyFifths + 7] + " minor";
+        }
+        int count = Math.abs(m_keyFifths);
+        String signature = count == 0 ? "no sharps or flats"
+                : count + (m_keyFifths > 0 ? " sharp" : " flat") + (count > 1 ? "s" : "");
+        return signature + " " + m_keyMode;
+    }
+
+    /**
+     * @return the first measure's time signature, like "3/4". Null if it has none.
+     */
+    public String getTimeSignature() {
+        return m_timeSignature;
+    }
+
+    /**
+     * @return the measures in the first part, repeats not played out. {@link #NO_MEASURE_COUNT}
+     *         if they weren't counted.
+     */
+    public int getMeasureCount() {
+        return m_measureCount;
+    }
+
+    /**
+     * @return what's known of the music, like "2 parts, 64 measures, D major, 4/4, 120 BPM".
+     */
+    public String describe() {
+        List<String> result = new ArrayList<>();
+        result.add(m_partCount + (m_partCount == 1 ? " part" : " parts"));
+        if (m_measureCount != NO_MEASURE_COUNT) {
+            result.add(m_measureCount + (m_measureCount == 1 ? " measure" : " measures"));
+        }
+        String keyName = getKeyName();
+        if (keyName != null) {
+            result.add(keyName);
+        }
+        if (m_timeSignature != null) {
+            result.add(m_timeSignature);
+        }
+        if (m_tempo != NO_TEMPO) {
+            result.add(m_tempo + " BPM");
+        }
+        return String.join(", ", result);
+    }
+}
@@ -0,0 +1,293 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+import jakarta.xml.bind.JAXBException;
+import org.audiveris.proxymusic.mxl.Mxl.MxlException;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
+
+/**
+ * The {@link MxlParser#scanHeader headers} of MXL files looked at before, kept on disk, so
+ * browsing a library doesn't open every score again. An entry is only used while the file's
+ * modified time and size are the same as when it was scanned.
+ *
+ * The index is a tab separated text file, read when the index is created and written back by
+ * {@link #save()} if anything changed. It's written to a temporary file and moved into place, so
+ * another process reads the old index or the new one, never half of one. The last to save wins.
+ */
+public class ScoreIndex {
+    // Bump when scanning the same file gives a different header, older indexes are dropped.
+    private static final int FORMAT_VERSION = 1;
+    private static final String FIRST_LINE_PREFIX = "sologjm-index\t";
+    private static final String FIRST_LINE = FIRST_LINE_PREFIX + FORMAT_VERSION;
+
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    // Path, size, modified time, then the header
+    private static final int FIELD_COUNT = 11;
+
+    private static final class _Entry {
+        private final long m_size;
+        private final long m_lastModified;
+        private final ScoreHeader m_header;
+
+        private _Entry(long size, long lastModified, ScoreHeader header) {
+            m_size = size;
+            m_lastModified = lastModified;
+            m_header = header;
+        }
+    }
+
+    private final Path m_file;
+    private final Map<String, _Entry> m_entries;
+    private boolean m_dirty;
+
+    /**
+     * Read the index in {@code file}, or start an empty one if there's none yet.
+     */
+    public ScoreIndex(Path file) throws IOException {
+        m_file = file.toAbsolutePath();
+        m_entries = new HashMap<>();
+        m_dirty = false;
+        load();
+    }
+
+    /**
+     * The index configured with {@code -Dsologjm.index}: a file, or {@code off}. It defaults to
+     * {@code .sologjm/index.tsv} in the user's home.
+     *
+     * @return null if the index is off, or can't be read.
+     */
+    public static ScoreIndex fromSystemProperty() {
+        String file = System.getProperty("sologjm.index");
+        if ("off".equalsIgnoreCase(file)) {
+            return null;
+        }
+
+        Path path = file == null || file.isBlank()
+                ? Path.of(System.getProperty("user.home"), ".sologjm", "index.tsv")
+                : Path.of(file);
+        try {
+            return new ScoreIndex(path);
+        } catch (IOException e) {
+            Diagnostics.log(CONVERT, WARN, "WARNING: Score index disabled, can't read " + path
+                    + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the header of {@code file} with its measures counted, from the index if the file
+     *         hasn't changed since, otherwise scanned now.
+     */
+    public ScoreHeader get(Path file)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        Path path = file.toAbsolutePath().normalize();
+        String key = path.toString();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        synchronized (this) {
+            _Entry entry = m_entries.get(key);
+            if (entry != null && entry.m_size == size && entry.m_lastModified == lastModified) {
+                return entry.m_header;
+            }
+        }
+
+        // Not holding the lock, other files can be scanned meanwhile.
+        ScoreHeader header = MxlParser.scanHeader(path.toFile());
+        synchronized (this) {
+            m_entries.put(key, new _Entry(size, lastModified, header));
+            m_dirty = true;
+        }
+        return header;
+    }
+
+    /**
+     * @return the number of files in the index, changed or not.
+     */
+    public synchronized int size() {
+        return m_entries.size();
+    }
+
+    /**
+     * Write the index back to its file, if anything was scanned since it was read or saved.
+     */
+    public void save() throws IOException {
+        List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            if (!m_dirty) {
+                return;
+            }
+            lines.add(FIRST_LINE);
+            // Sorted, so the file only changes where the files did.
+            for (Map.Entry<String, _Entry> entry : new TreeMap<>(m_entries).entrySet()) {
+                lines.add(format(entry.getKey(), entry.getValue()));
+            }
+            m_dirty = false;
+        }
+
+        Path dir = m_file.getParent();
+        Files.createDirectories(dir);
+        Path tempFile = Files.createTempFile(dir, "index", TEMP_EXTENSION);
+        try {
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, m_file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            synchronized (this) {
+                m_dirty = true;
+            }
+            if (e instanceof AtomicMoveNotSupportedException) {
+                // Can't happen within one directory on the file systems we know of.
+                Diagnostics.log(CONVERT, WARN, "WARNING: Score index needs atomic moves: " + e);
+                return;
+            }
+            throw e;
+        }
+        Diagnostics.logf(CONVERT, DEBUG, "Saved %d scores to %s\n", lines.size() - 1, m_file);
+    }
+
+    private void load() throws IOException {
+        BufferedReader reader;
+        try {
+            reader = Files.newBufferedReader(m_file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+
+        try (reader) {
+            String line = reader.readLine();
+            if (line != null && !line.startsWith(FIRST_LINE_PREFIX)) {
+                // Don't save over whatever this is.
+                throw new IOException("Not a score index: " + m_file);
+            }
+            if (!FIRST_LINE.equals(line)) {
+                // Empty, or another version's. The next save replaces it.
+                if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                    Diagnostics.log(CONVERT, DEBUG, "Ignoring score index " + m_file);
+                }
+                m_dirty = true;
+                return;
+            }
+            while ((line = reader.readLine()) != null) {
+                if (!parse(line)) {
+                    if (Diagnostics.isEnabled(CONVERT, DEBUG)) {
+                        Diagnostics.log(CONVERT, DEBUG, "Bad score index line: " + line);
+                    }
+                    m_dirty = true;
+                }
+            }
+        }
+    }
+
+    private static String format(String path, _Entry entry) {
+        ScoreHeader header = entry.m_header;
+        return String.join("\t",
+                escape(path),
+                Long.toString(entry.m_size),
+                Long.toString(entry.m_lastModified),
+                escape(header.getTitle()),
+                escape(header.getComposer()),
+                Integer.toString(header.getTempo()),
+                Integer.toString(header.getPartCount()),
+                Integer.toString(header.getKeyFifths()),
+                escape(header.getKeyMode()),
+                escape(header.getTimeSignature()),
+                Integer.toString(header.getMeasureCount()));
+    }
+
+    /**
+     * @return false if the line isn't an entry.
+     */
+    private boolean parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELD_COUNT) {
+            return false;
+        }
+        try {
+            ScoreHeader header = new ScoreHeader(
+                    unescape(fields[3]),
+                    unescape(fields[4]),
+                    Integer.parseInt(fields[5]),
+                    Integer.parseInt(fields[6]),
+                    Integer.parseInt(fields[7]),
+                    unescape(fields[8]),
+                    unescape(fields[9]),
+                    Integer.parseInt(fields[10]));
+            m_entries.put(unescape(fields[0]),
+                    new _Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), header));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the value with backslashes, tabs and line breaks escaped. Null is the empty string,
+     *         the header has no empty values.
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\' -> result.append("\\\\");
+            case '\t' -> result.append("\\t");
+            case '\n' -> result.append("\\n");
+            case '\r' -> result.append("\\r");
+            default -> result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                result.append(c);
+                continue;
+            }
+            c = value.charAt(++i);
+            switch (c) {
+            case 't' -> result.append('\t');
+            case 'n' -> result.append('\n');
+            case 'r' -> result.append('\r');
+            default -> result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package ca.kieve.sologjm;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last few scores read, in memory, so converting the same file again with other parameters
+ * skips reading it. An entry is only used while the file's modified time and size are the same as
+ * when it was read.
+ */
+public class ScoreModelCache {
+    private static final class _Entry {
+        private final long m_lastModified;
+        private final long m_length;
+        private final GjmBuilder m_builder;
+
+        private _Entry(long lastModified, long length, GjmBuilder builder) {
+            m_lastModified = lastModified;
+            m_length = length;
+            m_builder = builder;
+        }
+    }
+
+    private final Map<String, _Entry> m_entries;
+
+    /**
+     * @param capacity how many scores to keep, the least recently used is dropped past it.
+     */
+    public ScoreModelCache(int capacity) {
+        m_entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, _Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return a builder that has read {@code file}, to get
+     *         {@link GjmBuilder#withParameters new parameters} from. Null if the file hasn't been
+     *         read, or has changed since.
+     */
+    public synchronized GjmBuilder get(File file, long lastModified, long length) {
+        String key = file.getAbsolutePath();
+        _Entry entry = m_entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.m_lastModified != lastModified || entry.m_length != length) {
+            m_entries.remove(key);
+            return null;
+        }
+        return entry.m_builder;
+    }
+
+    /**
+     * @param lastModified the file's modified time from before it was read, so a change while
+     *                     reading is noticed next time.
+     */
+    public synchronized void put(File file, long lastModified, long length, GjmBuilder builder) {
+        m_entries.put(file.getAbsolutePath(), new _Entry(lastModified, length, builder));
+    }
+
+    public synchronized void clear() {
+        m_entries.clear();
+    }
+}
@@ -0,0 +1,470 @@
+package ca.kieve.sologjm;
+
+import jakarta.xml.bind.JAXBException;
+import org.audiveris.proxymusic.mxl.Mxl;
+import org.audiveris.proxymusic.mxl.Mxl.MxlException;
+import org.audiveris.proxymusic.mxl.RootFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+
+import static ca.kieve.sologjm.MxlStreamReader.nextChild;
+import static ca.kieve.sologjm.MxlStreamReader.skipElement;
+
+/**
+ * Finds everything in a score the converter would reject, in one streaming pass over the XML and
+ * without building anything. A conversion stops at the first of them, after reading everything
+ * before it. This reports all of them with where they are, so a batch can skip or sort out the
+ * scores it can't convert for the cost of reading each once.
+ *
+ * It checks what {@link MxlStreamReader} and {@link GjmBuilder} reject, not the XML schema. A
+ * score it finds nothing in can still fail, for example on an XML error, or a chord that starts
+ * with a rest.
+ *
+ * A repeat still open at the end of a part carries over into the next one, as in a conversion.
+ */
+public final class ScoreValidator {
+    // Past this the score isn't read any further.
+    public static final int MAX_PROBLEMS = 1000;
+
+    // Measures listed per problem in a summary
+    private static final int MAX_SUMMARY_MEASURES = 10;
+
+    public static final class Problem {
+        private final String m_partId;
+        private final String m_measure;
+        private final String m_message;
+
+        private Problem(String partId, String measure, String message) {
+            m_partId = partId;
+            m_measure = measure;
+            m_message = message;
+        }
+
+        /**
+         * @return the id of the part, like "P1". Null for problems with the whole score.
+         */
+        public String getPartId() {
+            return m_partId;
+        }
+
+        /**
+         * @return the measure's number as the score gives it, which is usually what notation
+         *         software shows. Null for problems with the whole score.
+         */
+        public String getMeasure() {
+            return m_measure;
+        }
+
+        public String getMessage() {
+            return m_message;
+        }
+
+        @Override
+        public String toString() {
+            if (m_partId == null) {
+                return m_message;
+            }
+            return "Part " + m_partId + ", measure " + m_measure + ": " + m_message;
+        }
+    }
+
+    public static final class Report {
+        private final List<Problem> m_problems;
+        private final boolean m_truncated;
+
+        private Report(List<Problem> problems, boolean truncated) {
+            m_problems = List.copyOf(problems);
+            m_truncated = truncated;
+        }
+
+        /**
+         * @return true if nothing the converter rejects was found.
+         */
+        public boolean isSupported() {
+            return m_problems.isEmpty();
+        }
+
+        /**
+         * @return every problem in document order, up to {@link #MAX_PROBLEMS}.
+         */
+        public List<Problem> getProblems() {
+            return m_problems;
+        }
+
+        /**
+         * @return true if the score had more problems, and wasn't read to the end.
+         */
+        public boolean isTruncated() {
+            return m_truncated;
+        }
+
+        /**
+         * @return a line per kind of problem, with how often it came up and the first few
+         *         measures it's in, like "tuplet: 12 times, measures 3, 5, 8".
+         */
+        public List<String> summarize() {
+            Map<String, List<Problem>> byMessage = new LinkedHashMap<>();
+            for (Problem problem : m_problems) {
+                byMessage.computeIfAbsent(problem.m_message, $ -> new ArrayList<>()).add(problem);
+            }
+
+            List<String> result = new ArrayList<>(byMessage.size() + 1);
+            for (Map.Entry<String, List<Problem>> entry : byMessage.entrySet()) {
+                List<Problem> problems = entry.getValue();
+                StringBuilder line = new StringBuilder(entry.getKey());
+                if (problems.size() > 1) {
+                    line.append(": ").append(problems.size()).append(" times");
+                }
+
+                Set<String> measures = new LinkedHashSet<>();
+                for (Problem problem : problems) {
+                    if (problem.m_partId != null) {
+                        measures.add(problem.m_measure);
+                    }
+                }
+                if (!measures.isEmpty()) {
+                    line.append(problems.size() > 1 ? ", " : ": ")
+                            .append(measures.size() == 1 ? "measure " : "measures ");
+                    int listed = 0;
+                    for (String measure : measures) {
+                        if (listed == MAX_SUMMARY_MEASURES) {
+                            line.append(", ...");
+                            break;
+                        }
+                        line.append(listed++ > 0 ? ", " : "").append(measure);
+                    }
+                }
+                result.add(line.toString());
+            }
+            if (m_truncated) {
+                result.add("Stopped looking after " + MAX_PROBLEMS + " problems.");
+            }
+            return result;
+        }
+    }
+
+    private final XMLStreamReader m_reader;
+    private final List<Problem> m_problems;
+    private boolean m_truncated;
+
+    private String m_partId;
+    private String m_measure;
+    private int m_timeCount;
+    private boolean m_inRepeat;
+
+    private ScoreValidator(XMLStreamReader reader) {
+        m_reader = reader;
+        m_problems = new ArrayList<>();
+        m_truncated = false;
+        m_timeCount = 0;
+    }
+
+    /**
+     * Check the score in an MXL file.
+     */
+    public static Report validate(File file)
+            throws IOException, MxlException, JAXBException, XMLStreamException
+    {
+        try (Mxl.Input mif = new Mxl.Input(file)) {
+            RootFile first = mif.getRootFiles().get(0);
+            ZipEntry zipEntry = mif.getEntry(first.fullPath);
+            try (InputStream is = mif.getInputStream(zipEntry)) {
+                return validate(is);
+            }
+        }
+    }
+
+    /**
+     * Check a MusicXML document.
+     *
+     * @throws XMLStreamException if it isn't well formed XML.
+     */
+    public static Report validate(InputStream is) throws XMLStreamException {
+        XMLStreamReader reader = XmlParsers.createStreamReader(is);
+        try {
+            ScoreValidator validator = new ScoreValidator(reader);
+            validator.readScore();
+            return new Report(validator.m_problems, validator.m_truncated);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void problem(String message) {
+        if (m_problems.size() == MAX_PROBLEMS) {
+            m_truncated = true;
+            return;
+        }
+        m_problems.add(new Problem(m_partId, m_measure, message));
+    }
+
+    private void readScore() throws XMLStreamException {
+        while (m_reader.hasNext() && !m_truncated) {
+            if (m_reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (m_reader.getLocalName()) {
+            case "score-partwise" -> {
+                // Root, descend into it
+            }
+            case "score-timewise" -> {
+                problem("timewise score, only partwise scores are supported");
+                return;
+            }
+            case "part" -> readPart();
+            default -> skipElement(m_reader); // work, identification, part-list, etc.
+            }
+        }
+    }
+
+    private void readPart() throws XMLStreamException {
+        m_partId = m_reader.getAttributeValue(null, "id");
+        int measureCount = 0;
+        while (nextChild(m_reader) && !m_truncated) {
+            if (m_reader.getLocalName().equals("measure")) {
+                measureCount++;
+                String number = m_reader.getAttributeValue(null, "number");
+                m_measure = number != null ? number : "#" + measureCount;
+                readMeasure();
+            } else {
+                skipElement(m_reader);
+            }
+        }
+    }
+
+    private void readMeasure() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            switch (m_reader.getLocalName()) {
+            case "attributes" -> readAttributes();
+            case "note" -> readNote();
+            case "barline" -> readBarline();
+            case "forward" -> skipWith("forward");
+            default -> skipElement(m_reader);
+            }
+        }
+    }
+
+    private void readAttributes() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            switch (m_reader.getLocalName()) {
+            case "key" -> readKey();
+            case "time" -> readTime();
+            default -> skipElement(m_reader);
+            }
+        }
+    }
+
+    private void readKey() throws XMLStreamException {
+        boolean hasFifths = false;
+        while (nextChild(m_reader)) {
+            hasFifths |= m_reader.getLocalName().equals("fifths");
+            skipElement(m_reader);
+        }
+        if (!hasFifths) {
+            problem("non-traditional key");
+        }
+    }
+
+    private void readTime() throws XMLStreamException {
+        // One time signature for the whole song, even the same one again in another part.
+        if (++m_timeCount == 2) {
+            problem("time signature changes");
+        }
+
+        String beats = null;
+        String beatType = null;
+        while (nextChild(m_reader)) {
+            switch (m_reader.getLocalName()) {
+            case "beats" -> {
+                String text = m_reader.getElementText().strip();
+                if (beats == null) {
+                    beats = text;
+                }
+            }
+            case "beat-type" -> {
+                String text = m_reader.getElementText().strip();
+                if (beatType == null) {
+                    beatType = text;
+                }
+            }
+            default -> skipElement(m_reader);
+            }
+        }
+        if (beats == null || beatType == null) {
+            problem("time signature without beats, only x/4 is supported");
+        } else if (!beatType.equals("4") || !isInt(beats)) {
+            problem("time signature " + beats + "/" + beatType + ", only x/4 is supported");
+        }
+    }
+
+    private void readBarline() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            if (m_reader.getLocalName().equals("repeat")) {
+                if ("forward".equals(m_reader.getAttributeValue(null, "direction"))) {
+                    if (m_inRepeat) {
+                        problem("nested repeat");
+                    }
+                    m_inRepeat = true;
+                } else {
+                    if (!m_inRepeat) {
+                        problem("end repeat without a start repeat");
+                    }
+                    m_inRepeat = false;
+                }
+            }
+            skipElement(m_reader);
+        }
+    }
+
+    private void readNote() throws XMLStreamException {
+        for (int i = 0; i < m_reader.getAttributeCount(); ++i) {
+            switch (m_reader.getAttributeLocalName(i)) {
+            case "dynamics", "end-dynamics", "attack", "release", "time-only", "pizzicato",
+                    "font-family", "font-style", "font-size", "font-weight", "color",
+                    "relative-x", "relative-y", "print-dot", "print-lyric", "print-spacing" ->
+                    problem("note " + m_reader.getAttributeLocalName(i) + " attribute");
+            default -> {
+                // default-x, print-object, etc.
+            }
+            }
+        }
+
+        boolean isChord = false;
+        boolean isRest = false;
+        int dotCount = 0;
+        while (nextChild(m_reader)) {
+            switch (m_reader.getLocalName()) {
+            case "grace" -> skipWith("grace note");
+            case "cue" -> skipWith("cue note");
+            case "unpitched" -> skipWith("unpitched note");
+            case "instrument" -> skipWith("note instrument");
+            case "footnote" -> skipWith("note footnote");
+            case "level" -> skipWith("note level");
+            case "time-modification" -> skipWith("tuplet");
+            case "notehead" -> skipWith("notehead");
+            case "notehead-text" -> skipWith("notehead text");
+            case "play" -> skipWith("note play");
+            case "chord" -> {
+                isChord = true;
+                skipElement(m_reader);
+            }
+            case "rest" -> {
+                isRest = true;
+                if (m_reader.getAttributeValue(null, "measure") != null) {
+                    problem("whole measure rest");
+                }
+                skipElement(m_reader);
+            }
+            case "pitch" -> readPitch();
+            case "type" -> {
+                if (m_reader.getAttributeValue(null, "size") != null) {
+                    problem("note type size");
+                }
+                String type = m_reader.getElementText().strip();
+                if (!GjmBuilder.isSupportedNoteType(type)) {
+                    problem(type + " note");
+                }
+            }
+            case "dot" -> {
+                if (++dotCount == 2) {
+                    problem("double dotted note");
+                }
+                if (m_reader.getAttributeValue(null, "placement") != null) {
+                    problem("dot placement");
+                }
+                skipElement(m_reader);
+            }
+            case "accidental" -> {
+                String accidental = m_reader.getElementText().strip();
+                if (!GjmBuilder.isSupportedAccidental(accidental)) {
+                    problem(accidental + " accidental");
+                }
+            }
+            case "tie" -> {
+                if (m_reader.getAttributeValue(null, "time-only") != null) {
+                    problem("tie time-only");
+                }
+                skipElement(m_reader);
+            }
+            case "staff" -> {
+                String staff = m_reader.getElementText().strip();
+                if (!staff.equals("1") && !staff.equals("2")) {
+                    problem("staff " + staff + ", only 2 staves are supported");
+                }
+            }
+            case "notations" -> readNotations();
+            default -> skipElement(m_reader); // duration, voice, stem, beam, lyric, etc.
+            }
+        }
+
+        if (isChord && isRest) {
+            problem("rest in a chord");
+        }
+    }
+
+    private void skipWith(String problem) throws XMLStreamException {
+        problem(problem);
+        skipElement(m_reader);
+    }
+
+    private void readPitch() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            if (m_reader.getLocalName().equals("alter")) {
+                String alter = m_reader.getElementText().strip();
+                try {
+                    double value = Double.parseDouble(alter);
+                    if (value != Math.rint(value)) {
+                        problem("microtone");
+                    }
+                } catch (NumberFormatException e) {
+                    problem("alter " + alter);
+                }
+            } else {
+                skipElement(m_reader);
+            }
+        }
+    }
+
+    private void readNotations() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            switch (m_reader.getLocalName()) {
+            case "articulations" -> readArticulations();
+            // Allowed, but GJM has nothing to map most of them to.
+            case "tied", "slur", "slide", "fermata", "footnote", "level", "arpeggiate" ->
+                    skipElement(m_reader);
+            default -> skipWith(m_reader.getLocalName() + " notation");
+            }
+        }
+    }
+
+    private void readArticulations() throws XMLStreamException {
+        while (nextChild(m_reader)) {
+            String name = m_reader.getLocalName();
+            if (!name.equals("staccato") && !name.equals("accent")) {
+                problem(name + " articulation");
+            }
+            skipElement(m_reader);
+        }
+    }
+
+    private static boolean isInt(String value) {
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.MxlParser.ScoreReader;
+import ca.kieve.sologjm.debug.Diagnostics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.CONVERT;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.WARN;
+
+/**
+ * Gets the first conversion's one-off costs out of the way on a background thread: loading the
+ * reader, builder and writer classes, building the JAXB context for the JAXB reader, and running
+ * them once on a small bundled score. Conversions started meanwhile {@link #await wait} for it
+ * instead of doing the same work alongside.
+ */
+public final class Warmup {
+    private static final Map<ScoreReader, CompletableFuture<Void>> m_started =
+            new EnumMap<>(ScoreReader.class);
+
+    private Warmup() {
+        // Do not instantiate
+    }
+
+    /**
+     * Start warming up a reader, unless it already was.
+     *
+     * @return completed once it's warm, exceptionally if warming up failed.
+     */
+    public static synchronized CompletableFuture<Void> start(ScoreReader scoreReader) {
+        CompletableFuture<Void> future = m_started.get(scoreReader);
+        if (future != null) {
+            return future;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        m_started.put(scoreReader, result);
+        Thread thread = new Thread(() -> run(scoreReader, result), "gjm-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * @return true if the reader is warm, or nobody asked for it to be.
+     */
+    public static synchronized boolean isDone(ScoreReader scoreReader) {
+        CompletableFuture<Void> future = m_started.get(scoreReader);
+        return future == null || future.isDone();
+    }
+
+    /**
+     * Wait for the reader's warm-up, if one was started. If it failed, the conversion does the
+     * same work itself and finds out what's wrong.
+     *
+     * @throws CancellationException if interrupted while waiting.
+     */
+    public static void await(ScoreReader scoreReader) {
+        CompletableFuture<Void> future;
+        synchronized (Warmup.class) {
+            future = m_started.get(scoreReader);
+        }
+        if (future == null || future.isDone()) {
+            return;
+        }
+
+        Diagnostics.log(CONVERT, DEBUG, "Waiting for the warm-up.");
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            // Logged by run()
+        }
+    }
+
+    private static void run(ScoreReader scoreReader, CompletableFuture<Void> result) {
+        long startNanos = System.nanoTime();
+        try {
+            // The bundled score's summary isn't worth showing anyone.
+            Diagnostics.setMuted(true);
+            try {
+                MxlParser.warmUp(scoreReader);
+            } finally {
+                Diagnostics.setMuted(false);
+            }
+            Diagnostics.logf(CONVERT, DEBUG, "Warmed up the %s reader in %d ms.\n", scoreReader,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+            result.complete(null);
+        } catch (Exception | LinkageError e) {
+            Diagnostics.log(CONVERT, WARN, "WARNING: Warm-up failed: " + e);
+            result.completeExceptionally(e);
+        }
+    }
+}
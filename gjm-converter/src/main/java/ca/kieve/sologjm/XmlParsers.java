@@ -0,0 +1,114 @@
+package ca.kieve.sologjm;
+
+import ca.kieve.sologjm.debug.Diagnostics;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import org.audiveris.proxymusic.ScorePartwise;
+import org.audiveris.proxymusic.util.Marshalling;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Set;
+
+import static ca.kieve.sologjm.debug.Diagnostics.Category.PARSE;
+import static ca.kieve.sologjm.debug.Diagnostics.Level.DEBUG;
+
+/**
+ * The XML parsers every MusicXML document is read with. They never touch the network: the
+ * MusicXML DTDs a document names are read from a copy in the jar, and any other external DTD or
+ * entity is read as empty.
+ *
+ * One input factory is configured once and shared, it's thread safe. The readers it creates can't
+ * be reset, but the JAXB unmarshallers can, so there's one per thread.
+ */
+final class XmlParsers {
+    private static final String MUSICXML_DTD = "/dtd/musicxml.dtd";
+
+    // Any version. Older exports name the DTD by public ID only.
+    private static final String MUSICXML_PUBLIC_ID_PREFIX = "-//Recordare//DTD MusicXML ";
+    private static final Set<String> MUSICXML_DTD_NAMES =
+            Set.of("partwise.dtd", "timewise.dtd", "opus.dtd", "container.dtd");
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static final ThreadLocal<Unmarshaller> m_unmarshallers = new ThreadLocal<>();
+
+    private XmlParsers() {
+        // Do not instantiate
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // The DTD is read for the entities it declares, through the resolver. External general
+        // entities are never read, and nothing the resolver doesn't answer is fetched.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setXMLResolver(new _OfflineResolver());
+        return factory;
+    }
+
+    static XMLStreamReader createStreamReader(InputStream is) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(is);
+    }
+
+    /**
+     * Unmarshal a partwise score into proxymusic objects, like {@link Marshalling#unmarshal}
+     * but offline, and without looking up a new input factory every time.
+     */
+    static ScorePartwise unmarshalScore(InputStream is) throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = createStreamReader(is);
+        try {
+            return (ScorePartwise) unmarshaller().unmarshal(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Unmarshaller unmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = m_unmarshallers.get();
+        if (unmarshaller == null) {
+            unmarshaller = Marshalling.getContext(ScorePartwise.class).createUnmarshaller();
+            m_unmarshallers.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+
+    private static class _OfflineResolver implements XMLResolver {
+        @Override
+        public Object resolveEntity(String publicId, String systemId, String baseUri,
+                String namespace)
+                throws XMLStreamException
+        {
+            if (isMusicXmlDtd(publicId, systemId)) {
+                InputStream dtd = XmlParsers.class.getResourceAsStream(MUSICXML_DTD);
+                if (dtd == null) {
+                    throw new XMLStreamException("Missing " + MUSICXML_DTD);
+                }
+                return dtd;
+            }
+
+            Diagnostics.log(PARSE, DEBUG, "Not reading external entity "
+                    + (systemId != null ? systemId : publicId));
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        private static boolean isMusicXmlDtd(String publicId, String systemId) {
+            if (publicId != null && publicId.startsWith(MUSICXML_PUBLIC_ID_PREFIX)) {
+                return true;
+            }
+            if (systemId == null) {
+                return false;
+            }
+            String name = systemId.substring(systemId.lastIndexOf('/') + 1);
+            return MUSICXML_DTD_NAMES.contains(name.toLowerCase(Locale.ROOT));
+        }
+    }
+}
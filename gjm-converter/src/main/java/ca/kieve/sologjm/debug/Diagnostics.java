@@ -0,0 +1,136 @@
+package ca.kieve.sologjm.debug;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Leveled console output for the conversion code. Checking a disabled level is one array read,
+ * so guard anything that builds a message with {@link #isEnabled(Category, Level)}, or use the
+ * overloads taking a constant message.
+ *
+ * Configured with {@code -Dsologjm.debug}:
+ * <ul>
+ *     <li>unset: {@link Level#INFO} for everything.</li>
+ *     <li>{@code true}: {@link Level#TRACE} for everything, all the old debug dumps.</li>
+ *     <li>a level, like {@code debug}: that level for everything.</li>
+ *     <li>per category, like {@code parse=trace,build=debug}. Entries apply in order, a bare
+ *     level sets every category.</li>
+ * </ul>
+ */
+public final class Diagnostics {
+    public enum Level {
+        OFF,
+        ERROR,
+        WARN,
+        INFO,
+        DEBUG,
+        TRACE
+    }
+
+    public enum Category {
+        /** What was read from the MusicXML document, element dumps. */
+        PARSE,
+
+        /** Building the GJM notes and measures. */
+        BUILD,
+
+        /** Whole conversions: parts, files. */
+        CONVERT
+    }
+
+    private static final Level DEFAULT_LEVEL = Level.INFO;
+
+    // Highest enabled level ordinal, by category ordinal. Replaced, never changed in place.
+    private static volatile int[] m_thresholds = parse(System.getProperty("sologjm.debug"));
+
+    // Threads that print nothing, like background warm-ups. Only looked at for enabled levels.
+    private static final ThreadLocal<Boolean> m_muted = ThreadLocal.withInitial(() -> false);
+
+    private Diagnostics() {
+        // Do not instantiate
+    }
+
+    public static boolean isEnabled(Category category, Level level) {
+        return level.ordinal() <= m_thresholds[category.ordinal()] && !m_muted.get();
+    }
+
+    /**
+     * Silence everything logged from the current thread, or undo it.
+     */
+    public static void setMuted(boolean muted) {
+        m_muted.set(muted);
+    }
+
+    public static void log(Category category, Level level, String message) {
+        if (isEnabled(category, level)) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * The arguments are boxed by the caller even when disabled, guard this in hot paths.
+     */
+    public static void logf(Category category, Level level, String format, Object... args) {
+        if (isEnabled(category, level)) {
+            System.out.printf(format, args);
+        }
+    }
+
+    /**
+     * Print the properties of an object with {@link Dumper}, if the level is enabled.
+     */
+    public static void dump(Category category, Level level, Object object) {
+        if (object != null && isEnabled(category, level)) {
+            System.out.println(new Dumper.Column(object, ""));
+        }
+    }
+
+    public static synchronized void setLevel(Level level) {
+        int[] thresholds = new int[Category.values().length];
+        Arrays.fill(thresholds, level.ordinal());
+        m_thresholds = thresholds;
+    }
+
+    public static synchronized void setLevel(Category category, Level level) {
+        int[] thresholds = m_thresholds.clone();
+        thresholds[category.ordinal()] = level.ordinal();
+        m_thresholds = thresholds;
+    }
+
+    private static int[] parse(String property) {
+        int[] result = new int[Category.values().length];
+        Arrays.fill(result, DEFAULT_LEVEL.ordinal());
+        if (property == null || property.isBlank()) {
+            return result;
+        }
+
+        for (String entry : property.split(",")) {
+            entry = entry.strip().toUpperCase(Locale.ROOT);
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            try {
+                if (equals < 0) {
+                    Arrays.fill(result, parseLevel(entry).ordinal());
+                } else {
+                    Category category = Category.valueOf(entry.substring(0, equals).strip());
+                    result[category.ordinal()] =
+                            parseLevel(entry.substring(equals + 1).strip()).ordinal();
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println("WARNING: Ignoring unknown sologjm.debug setting: " + entry);
+            }
+        }
+        return result;
+    }
+
+    private static Level parseLevel(String level) {
+        if (level.equals("TRUE")) {
+            return Level.TRACE;
+        } else if (level.equals("FALSE")) {
+            return DEFAULT_LEVEL;
+        }
+        return Level.valueOf(level);
+    }
+}
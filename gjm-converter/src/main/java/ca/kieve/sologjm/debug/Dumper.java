@@ -9,10 +9,18 @@
 //
 package ca.kieve.sologjm.debug;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class <code>Dumper</code> is a debugging utility that reports,
@@ -32,6 +40,14 @@ import java.util.Map;
  * <code>isFieldRelevant(field)</code> returns true. Similarly, the behavior of
  * this predicate can be customized by subclassing the Dumper class. </p>
  *
+ * <p> By default field values are printed with their toString() method. With
+ * <code>setMaxDepth(n)</code>, values that are neither JDK types nor
+ * collections are dumped themselves, up to n levels down. An object already
+ * being dumped higher up is printed as a cycle marker instead. </p>
+ *
+ * <p> The relevant fields of each class are looked up once, and read through
+ * cached method handles afterwards. </p>
+ *
  * <p> There are several kinds of print outs available through subclassing. Each
  * of them export two public methods: <code>dump()</code> which prints the
  * result on default output stream, and <code>dumpOf()</code> which simply
@@ -57,6 +73,7 @@ import java.util.Map;
  *  // Using directly the Dumper subclasses
  * new Dumper.Column(myinstance).print();
  * System.out.println(new Dumper.Row(myinstance).toString());
+ * System.out.println(new Dumper.Column(myinstance).setMaxDepth(2));
  * display(new Dumper.Html(myinstance).toString());
  * </pre>
  *
@@ -64,32 +81,60 @@ import java.util.Map;
  */
 public abstract class Dumper
 {
+    //~ Static fields/initializers ---------------------------------------------
+
+    /** Maximum number of collection items printed */
+    private static final int MAX_COLLECTION_INDEX = 9;
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(
+            Object.class,
+            Object.class);
+
+    /** The relevant fields declared by each class, in declaration order */
+    private static final ClassValue<Accessor[]> ACCESSORS = new ClassValue<>()
+    {
+        @Override
+        protected Accessor[] computeValue (Class<?> type)
+        {
+            return createAccessors(type);
+        }
+    };
+
     //~ Instance fields --------------------------------------------------------
 
     /**
-     * The object to be dumped
+     * The object being dumped (beware, this variable is updated while a
+     * nested value is dumped)
      */
-    protected final Object obj;
+    protected Object obj;
 
     /**
-     * The string buffer used as output
+     * The string builder used as output
      */
-    protected final StringBuffer sb;
+    protected final StringBuilder sb;
 
     /**
      * Can we use HTML directives?
      */
     protected final boolean useHtml;
 
-    /** Maximum number of collection items printed */
-    private final int MAX_COLLECTION_INDEX = 9;
-
     /**
      * Class (beware, this variable is updated as we walk up the inheritance
      * tree)
      */
     protected Class cl;
 
+    /**
+     * How deep we are in nested values, 0 for the dumped object itself
+     */
+    protected int depth;
+
+    /** How deep nested values get dumped, 0 to only use toString() */
+    private int maxDepth;
+
+    /** The objects being dumped, from the dumped object down */
+    private final Set<Object> visiting;
+
     //~ Constructors -----------------------------------------------------------
 
     /**
@@ -100,13 +145,16 @@ public abstract class Dumper
     private Dumper (Object  obj,
             boolean useHtml)
     {
-        // (re)Allocate the string buffer
-        sb = new StringBuffer(1024);
+        // (re)Allocate the string builder
+        sb = new StringBuilder(1024);
 
         // Cache the object & the related class
         this.obj = obj;
         this.useHtml = useHtml;
         cl = obj.getClass();
+        depth = 0;
+        maxDepth = 0;
+        visiting = Collections.newSetFromMap(new IdentityHashMap<>());
     }
 
     //~ Methods ----------------------------------------------------------------
@@ -161,6 +209,24 @@ public abstract class Dumper
         return true;
     }
 
+    //-------------//
+    // setMaxDepth //
+    //-------------//
+    /**
+     * Dump field values that aren't JDK types instead of printing their
+     * toString(), down to the given depth.
+     *
+     * @param maxDepth how many levels of values to dump, 0 for none
+     *
+     * @return this dumper
+     */
+    public Dumper setMaxDepth (int maxDepth)
+    {
+        this.maxDepth = maxDepth;
+
+        return this;
+    }
+
     //------//
     // dump //
     //------//
@@ -272,7 +338,7 @@ public abstract class Dumper
     // toString //
     //----------//
     /**
-     * Return the string buffer content
+     * Return the string builder content
      *
      * @return the dump of the object as a string
      */
@@ -282,10 +348,30 @@ public abstract class Dumper
         // Do the processing
         processObject();
 
-        // Return the final content of string buffer
+        // Return the final content of string builder
         return sb.toString();
     }
 
+    //--------------------//
+    // isValueExpandable //
+    //--------------------//
+    /**
+     * Predicate to determine if a field value gets dumped itself, when the
+     * depth allows it, rather than printed with toString().
+     *
+     * @param value the non-null field value
+     *
+     * @return true if its fields are worth printing
+     */
+    protected boolean isValueExpandable (Object value)
+    {
+        Class<?> type = value.getClass();
+        String name = type.getName();
+
+        return !type.isArray() && !type.isEnum() && !name.startsWith("java.")
+               && !name.startsWith("javax.") && !name.startsWith("jakarta.");
+    }
+
     //------------------//
     // printClassEpilog //
     //------------------//
@@ -306,6 +392,26 @@ public abstract class Dumper
     {
     }
 
+    //-------------------//
+    // printNestedEpilog //
+    //-------------------//
+    /**
+     * To be overridden so as to print the epilog of a nested value dump
+     */
+    protected void printNestedEpilog ()
+    {
+    }
+
+    //-------------------//
+    // printNestedProlog //
+    //-------------------//
+    /**
+     * To be overridden so as to print the prolog of a nested value dump
+     */
+    protected void printNestedProlog ()
+    {
+    }
+
     //----------------------//
     // printCollectionValue //
     //----------------------//
@@ -315,18 +421,24 @@ public abstract class Dumper
 
         int i = 0;
 
-        for (Object obj : col) {
+        for (Object item : col) {
             if (i++ > 0) {
                 sb.append(useHtml ? ",<br/>" : ",");
             }
 
             // Safeguard action when the object is a big collection
             if (i > MAX_COLLECTION_INDEX) {
-                sb.append(" ... " + col.size() + " items");
+                sb.append(" ... ")
+                        .append(col.size())
+                        .append(" items");
 
                 break;
+            } else if (item == col) {
+                sb.append("(this Collection)");
+            } else if ((item != null) && canExpand(item)) {
+                printNested(item);
             } else {
-                sb.append(obj);
+                sb.append(item);
             }
         }
 
@@ -353,12 +465,81 @@ public abstract class Dumper
                 printCollectionValue((Collection) value);
             } else if (value instanceof Map) {
                 printCollectionValue(((Map) value).entrySet());
+            } else if (canExpand(value)) {
+                printNested(value);
             } else {
                 sb.append(value.toString());
             }
         }
     }
 
+    //-----------//
+    // canExpand //
+    //-----------//
+    private boolean canExpand (Object value)
+    {
+        return (depth < maxDepth) && isValueExpandable(value);
+    }
+
+    //-------------//
+    // printNested //
+    //-------------//
+    private void printNested (Object value)
+    {
+        if (visiting.contains(value)) {
+            sb.append("<cycle ")
+                    .append(value.getClass().getName())
+                    .append("@")
+                    .append(Integer.toHexString(System.identityHashCode(value)))
+                    .append(">");
+
+            return;
+        }
+
+        Object outerObj = obj;
+        Class<?> outerCl = cl;
+
+        obj = value;
+        cl = value.getClass();
+        depth++;
+
+        printNestedProlog();
+        processObject();
+        printNestedEpilog();
+
+        depth--;
+        cl = outerCl;
+        obj = outerObj;
+    }
+
+    //-----------------//
+    // createAccessors //
+    //-----------------//
+    private static Accessor[] createAccessors (Class<?> type)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Accessor> accessors = new ArrayList<>();
+
+        for (Field field : type.getDeclaredFields()) {
+            if (!isFieldRelevant(field)) {
+                continue;
+            }
+
+            try {
+                // Override any access limitation
+                field.setAccessible(true);
+                accessors.add(
+                        new Accessor(
+                                field.getName(),
+                                lookup.unreflectGetter(field).asType(GETTER_TYPE)));
+            } catch (RuntimeException | IllegalAccessException ex) {
+                // Not opened to us (InaccessibleObjectException), skip it
+            }
+        }
+
+        return accessors.toArray(new Accessor[0]);
+    }
+
     //--------------//
     // processClass //
     //--------------//
@@ -368,8 +549,8 @@ public abstract class Dumper
         printClassProlog();
 
         // Process the class Fields
-        for (Field field : cl.getDeclaredFields()) {
-            processField(field);
+        for (Accessor accessor : ACCESSORS.get(cl)) {
+            processField(accessor);
         }
 
         // Class Epilog
@@ -379,23 +560,20 @@ public abstract class Dumper
     //--------------//
     // processField //
     //--------------//
-    private void processField (Field field)
+    private void processField (Accessor accessor)
     {
-        // Check that we are really interested in printing this field out
-        if (isFieldRelevant(field)) {
-            // Override any access limitation
-            field.setAccessible(true);
-
-            try {
-                // Retrieve field value in the object instance
-                Object value = field.get(obj);
-
-                // Print the field value as requested
-                printField(field.getName(), value);
-            } catch (IllegalAccessException ex) {
-                // Cannot occur in fact, thanks to setAccessible
-            }
+        Object value;
+
+        try {
+            // Retrieve field value in the object instance
+            value = (Object) accessor.getter.invokeExact(obj);
+        } catch (Throwable ex) {
+            // Cannot occur in fact, the getter was checked when created
+            return;
         }
+
+        // Print the field value as requested
+        printField(accessor.name, value);
     }
 
     //---------------//
@@ -403,6 +581,8 @@ public abstract class Dumper
     //---------------//
     private void processObject ()
     {
+        visiting.add(obj);
+
         do {
             // Process the class at hand
             processClass();
@@ -410,10 +590,35 @@ public abstract class Dumper
             // Walk up the inheritance tree
             cl = cl.getSuperclass();
         } while (isClassRelevant(cl));
+
+        visiting.remove(obj);
     }
 
     //~ Inner Classes ----------------------------------------------------------
 
+    //----------//
+    // Accessor //
+    //----------//
+    /**
+     * A relevant field, with a getter taking and returning Object.
+     */
+    private static final class Accessor
+    {
+        //~ Instance fields ----------------------------------------------------
+
+        private final String       name;
+        private final MethodHandle getter;
+
+        //~ Constructors -------------------------------------------------------
+
+        private Accessor (String       name,
+                MethodHandle getter)
+        {
+            this.name = name;
+            this.getter = getter;
+        }
+    }
+
     //--------//
     // Column //
     //--------//
@@ -432,8 +637,8 @@ public abstract class Dumper
 
         //~ Instance fields ----------------------------------------------------
 
-        private final String       title;
-        private final StringBuffer prefix;
+        private final String   title;
+        private String[] prefixes;
 
         //~ Constructors -------------------------------------------------------
 
@@ -467,12 +672,23 @@ public abstract class Dumper
                 this.title = "";
             }
 
-            // Prepare indent prefix
-            prefix = new StringBuffer(level * INDENT_GAP.length());
+            // Indent prefixes by nested depth, grown as deeper ones are needed
+            prefixes = new String[] { INDENT_GAP.repeat(level) };
+        }
 
-            for (int i = level; i > 0; i--) {
-                prefix.append(INDENT_GAP);
+        private String prefix ()
+        {
+            if (depth >= prefixes.length) {
+                String[] grown = new String[Math.max(depth + 1, prefixes.length * 2)];
+                for (int i = 0; i < grown.length; ++i) {
+                    grown[i] = (i < prefixes.length)
+                            ? prefixes[i]
+                            : prefixes[0] + INDENT_GAP.repeat(i);
+                }
+                prefixes = grown;
             }
+
+            return prefixes[depth];
         }
 
         //~ Methods ------------------------------------------------------------
@@ -484,7 +700,7 @@ public abstract class Dumper
             // heritance hierarchy
             if (obj.getClass() == cl) {
                 sb.append("\n");
-                sb.append(prefix)
+                sb.append(prefix())
                         .append(cl.getName());
                 sb.append(" ")
                         .append(title)
@@ -497,7 +713,7 @@ public abstract class Dumper
                 Object value)
         {
             sb.append("\n");
-            sb.append(prefix)
+            sb.append(prefix())
                     .append(MEMBER_GAP);
             sb.append(name)
                     .append("=");
@@ -543,10 +759,22 @@ public abstract class Dumper
             // Table end
             sb.append("</table>");
 
-            // Return the final content of string buffer
+            // Return the final content of string builder
             return sb.toString();
         }
 
+        @Override
+        protected void printNestedEpilog ()
+        {
+            sb.append("</table>");
+        }
+
+        @Override
+        protected void printNestedProlog ()
+        {
+            sb.append("<table border=0 cellpadding=3>");
+        }
+
         @Override
         protected void printClassProlog ()
         {
@@ -1,6 +1,8 @@
 module ca.kieve.sologjm {
     requires java.base;
     requires java.desktop;
+    requires java.xml;
+    requires jdk.httpserver;
 
     requires javafx.base;
     requires javafx.controls;